@@ -0,0 +1,59 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import jpabook.jpashop.ShopApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 벤치마크용 스프링 컨텍스트 (ShopApplication 을 인메모리 H2 로, 웹 서버 없음)
+ * JPA 설정은 애플리케이션과 같은 application.properties 를 쓰고, 아래 값과 벤치마크별 값만 덮어쓴다.
+ */
+public final class BenchmarkApplication {
+
+    private static final String[] DEFAULTS = {
+        "spring.datasource.url=jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "spring.jpa.show-sql=false",
+        "server.port=0",
+        //DB 가 매번 새로 만들어지므로 이름 색인도 메모리에
+        "jpashop.search.index-dir=",
+        //측정 대상이 아닌 메트릭은 끈다
+        "jpashop.metrics.repository.enabled=false",
+        "jpashop.metrics.statements.enabled=false",
+        "jpashop.metrics.hibernate.enabled=false"
+    };
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * 웹 서버까지 띄운다 (임의 포트, local.server.port)
+     */
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        return run(WebApplicationType.SERVLET, properties);
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType webApplicationType, String... properties) {
+
+        //명령행 인자로 넘겨야 application.properties 보다 우선한다 (뒤에 온 값이 이긴다)
+        List<String> args = new ArrayList<>();
+        for (String property : DEFAULTS) {
+            args.add("--" + String.format(property, UUID.randomUUID()));
+        }
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+
+        return new SpringApplicationBuilder(ShopApplication.class)
+            .web(webApplicationType)
+            .run(args.toArray(new String[0]));
+    }
+}
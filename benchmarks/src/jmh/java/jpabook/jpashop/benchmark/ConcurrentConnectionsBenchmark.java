@@ -0,0 +1,142 @@
+package jpabook.jpashop.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.netty.DisposableServer;
+
+/**
+ * 동시 연결 1만 개에서의 주문 검색 처리량
+ * platform: Tomcat 플랫폼 스레드 풀, virtual: 가상 스레드 (jpashop.virtual-threads.enabled),
+ * reactive: WebFlux + R2DBC (jpashop.reactive.enabled)
+ * 한 번 호출에 회원별 주문 검색 요청 1만 건을 동시에 보내고 모두 끝날 때까지 기다린다.
+ * 결과는 요청/ms. virtual 은 Java 21 에서 실행해야 한다 (-PjmhJava=21).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+public class ConcurrentConnectionsBenchmark {
+
+    private static final int CONNECTIONS = 10_000;
+    private static final int MEMBER_COUNT = 100;
+    private static final int ITEM_COUNT = 100;
+    private static final int ORDER_COUNT = 1000;
+
+    @Param({"platform", "virtual", "reactive"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    HttpClient httpClient;
+    String searchUrl;
+
+    List<Long> memberIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.startServer(
+            "jpashop.virtual-threads.enabled=" + mode.equals("virtual"),
+            "jpashop.reactive.enabled=" + mode.equals("reactive"),
+            "jpashop.reactive.port=0",
+            //플랫폼 스레드 모드도 연결은 모두 받는다 (처리는 스레드 풀 크기만큼)
+            "server.tomcat.max-connections=" + CONNECTIONS,
+            "server.tomcat.accept-count=" + CONNECTIONS);
+        if (mode.equals("reactive")) {
+            int port = context.getBean(DisposableServer.class).port();
+            searchUrl = "http://localhost:" + port + "/orders?memberId=";
+        } else {
+            searchUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + "/orders/rows?memberId=";
+        }
+
+        MemberService memberService = context.getBean(MemberService.class);
+        ItemService itemService = context.getBean(ItemService.class);
+        OrderService orderService = context.getBean(OrderService.class);
+
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            Member member = new Member();
+            member.setName("bench-member-" + i);
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            memberIds.add(memberService.join(member));
+        }
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            Book book = new Book();
+            book.setName("bench-book-" + i);
+            book.setPrice(10000);
+            book.setStockQuantity(Integer.MAX_VALUE);
+            itemService.saveItem(book);
+            itemIds.add(book.getId());
+        }
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orderService.order(randomOf(memberIds), randomOf(itemIds), 1);
+        }
+
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONNECTIONS)
+    public int searchOrders() {
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(CONNECTIONS);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            URI uri = URI.create(searchUrl + randomOf(memberIds));
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+
+        int failed = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException("실패한 요청 " + failed + " 건");
+        }
+        return CONNECTIONS;
+    }
+
+    private static Long randomOf(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
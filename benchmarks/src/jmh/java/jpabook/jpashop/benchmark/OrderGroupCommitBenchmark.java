@@ -0,0 +1,93 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.service.OrderWriteQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 동시 주문 처리량 - 주문마다 커밋 vs 묶음 커밋 (OrderWriteQueue)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(32)
+public class OrderGroupCommitBenchmark {
+
+    private static final int MEMBER_COUNT = 100;
+    private static final int ITEM_COUNT = 100;
+
+    @Param({"false", "true"})
+    String groupCommit;
+
+    ConfigurableApplicationContext context;
+    OrderService orderService;
+    OrderWriteQueue orderWriteQueue;
+
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> itemIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.start("jpashop.order.group-commit.enabled=" + groupCommit);
+        orderService = context.getBean(OrderService.class);
+        orderWriteQueue = context.getBeanProvider(OrderWriteQueue.class).getIfAvailable();
+        MemberService memberService = context.getBean(MemberService.class);
+        ItemService itemService = context.getBean(ItemService.class);
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            Member member = new Member();
+            member.setName("bench-member-" + i);
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            memberIds.add(memberService.join(member));
+        }
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            Book book = new Book();
+            book.setName("bench-book-" + i);
+            book.setPrice(10000);
+            book.setStockQuantity(Integer.MAX_VALUE);
+            itemService.saveItem(book);
+            itemIds.add(book.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long order() {
+
+        Long memberId = randomOf(memberIds);
+        Long itemId = randomOf(itemIds);
+        if (orderWriteQueue != null) {
+            return orderWriteQueue.submit(memberId, itemId, 1).join();
+        }
+        return orderService.order(memberId, itemId, 1);
+    }
+
+    private static Long randomOf(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
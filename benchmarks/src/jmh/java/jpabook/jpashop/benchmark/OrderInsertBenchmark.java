@@ -0,0 +1,102 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 주문 10만 건 저장 시간 - 식별자 할당 전략 비교
+ * none: 저장할 때마다 시퀀스 조회, pooled-lo: allocationSize 만큼 메모리에서 할당
+ * 주문/주문상품/배송의 ShardSequenceGenerator 도 같은 설정(hibernate.id.optimizer.pooled.preferred)을 따른다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+public class OrderInsertBenchmark {
+
+    private static final int ORDER_COUNT = 100_000;
+    private static final int FLUSH_SIZE = 50;
+
+    @Param({"none", "pooled-lo"})
+    String optimizer;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate transactionTemplate;
+    EntityManagerFactory entityManagerFactory;
+    Long memberId;
+    Long itemId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+
+        context = BenchmarkApplication.start(
+            "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=" + optimizer);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+
+            Member member = new Member();
+            member.setName("bench-member");
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+
+            Book book = new Book();
+            book.setName("bench-book");
+            book.setPrice(10000);
+            em.persist(book);
+
+            memberId = member.getId();
+            itemId = book.getId();
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void insertOrders() {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+
+            for (int i = 1; i <= ORDER_COUNT; i++) {
+                Member member = em.getReference(Member.class, memberId);
+                Item item = em.getReference(Item.class, itemId);
+
+                OrderItem orderItem = OrderItem.createReservedOrderItem(item, 10000, 1);
+                em.persist(Order.createOrder(member, new Delivery(member.getAddress()), orderItem));
+
+                if (i % FLUSH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+    }
+}
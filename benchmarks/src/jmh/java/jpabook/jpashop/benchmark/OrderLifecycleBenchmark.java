@@ -0,0 +1,164 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderListDto;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 주문 생명주기 벤치마크 (주문, 주문 취소, 주문 검색, 회원 가입)
+ * 처리량과 지연시간 백분위(p99)를 함께 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderLifecycleBenchmark {
+
+    private static final int MEMBER_COUNT = 100;
+    private static final int ITEM_COUNT = 100;
+    private static final int ORDER_COUNT = 1000;
+
+    private final AtomicLong memberSequence = new AtomicLong();
+
+    ConfigurableApplicationContext context;
+    OrderService orderService;
+    MemberService memberService;
+    OrderRepository orderRepository;
+    TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> itemIds = new ArrayList<>();
+    OrderSearch orderSearch = new OrderSearch();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        memberService = context.getBean(MemberService.class);
+        orderRepository = context.getBean(OrderRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        ItemService itemService = context.getBean(ItemService.class);
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            memberIds.add(memberService.join(createMember("bench-member-" + i)));
+        }
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            Book book = new Book();
+            book.setName("bench-book-" + i);
+            book.setPrice(10000);
+            book.setStockQuantity(Integer.MAX_VALUE);
+            itemService.saveItem(book);
+            itemIds.add(book.getId());
+        }
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orderService.order(randomOf(memberIds), randomOf(itemIds), 1);
+        }
+
+        orderSearch.setMemberName("member-1");
+        orderSearch.setOrderStatus(OrderStatus.ORDER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 취소할 주문을 스레드마다 미리 만들어 둔다.
+     */
+    @State(Scope.Thread)
+    public static class CancelTarget {
+
+        Long orderId;
+
+        @Setup(Level.Invocation)
+        public void createOrder(OrderLifecycleBenchmark benchmark) {
+            orderId = benchmark.orderService.order(
+                benchmark.randomOf(benchmark.memberIds), benchmark.randomOf(benchmark.itemIds), 1);
+        }
+    }
+
+    @Benchmark
+    public Long order() {
+        return orderService.order(randomOf(memberIds), randomOf(itemIds), 1);
+    }
+
+    @Benchmark
+    public void cancelOrder(CancelTarget target) {
+        orderService.cancelOrder(target.orderId);
+    }
+
+    @Benchmark
+    public List<Order> findOrders() {
+        return orderService.findOrders(orderSearch);
+    }
+
+    /**
+     * 호출마다 Criteria 트리를 만든다 (회원 이름은 이름 색인 없이 LIKE)
+     */
+    @Benchmark
+    public List<Order> findOrdersSpecification() {
+        return transactionTemplate.execute(status -> orderRepository.findAll(orderSearch.toSpecification()));
+    }
+
+    /**
+     * 호출마다 QueryDSL 쿼리를 만든다 (findOrdersJpql 과 같은 조건)
+     */
+    @Benchmark
+    public List<Order> findOrdersQuerydsl() {
+        return transactionTemplate.execute(status -> orderRepository.searchQuerydsl(orderSearch));
+    }
+
+    /**
+     * 조건 조합별로 캐시한 JPQL (OrderQuery)
+     */
+    @Benchmark
+    public List<Order> findOrdersJpql() {
+        return transactionTemplate.execute(status -> orderRepository.search(orderSearch));
+    }
+
+    @Benchmark
+    public List<OrderListDto> findOrderList() {
+        return orderService.findOrderList(orderSearch);
+    }
+
+    @Benchmark
+    public Long join() {
+        return memberService.join(createMember("join-" + memberSequence.incrementAndGet()));
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return member;
+    }
+
+    private Long randomOf(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
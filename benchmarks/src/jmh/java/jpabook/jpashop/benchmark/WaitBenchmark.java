@@ -0,0 +1,93 @@
+package jpabook.jpashop.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 동시 클라이언트 1천 개에서의 1초 지연 응답 처리량
+ * blocking: /wait/blocking (요청 스레드에서 Thread.sleep, 변경 전), deferred: /wait (DeferredResult, 변경 후)
+ * 한 번 호출에 요청 1천 건을 동시에 보내고 모두 끝날 때까지 기다린다. 결과는 요청/ms.
+ * Tomcat 기본 스레드 200 개로 blocking 은 요청 1천 건에 약 5초, deferred 는 약 1초가 걸린다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+public class WaitBenchmark {
+
+    private static final int CLIENTS = 1000;
+
+    @Param({"blocking", "deferred"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    HttpClient httpClient;
+    URI waitUri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.startServer(
+            //요청 스레드 수는 Tomcat 기본값(200) 그대로, 연결은 모두 받는다
+            "server.tomcat.max-connections=" + CLIENTS,
+            "server.tomcat.accept-count=" + CLIENTS);
+
+        String port = context.getEnvironment().getProperty("local.server.port");
+        waitUri = URI.create("http://localhost:" + port + (mode.equals("blocking") ? "/wait/blocking" : "/wait"));
+
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLIENTS)
+    public int waitResponses() {
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(waitUri)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+
+        int failed = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException("실패한 요청 " + failed + " 건");
+        }
+        return CLIENTS;
+    }
+}
@@ -0,0 +1,101 @@
+-- 엔티티별 시퀀스 (INCREMENT BY 는 @SequenceGenerator.allocationSize 와 같아야 한다)
+-- 기존 데이터가 있으면 START WITH 를 hibernate_sequence 현재 값보다 크게 잡는다.
+CREATE SEQUENCE MEMBER_SEQ START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE ORDERS_SEQ START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE ORDER_ITEM_SEQ START WITH 1 INCREMENT BY 100;
+CREATE SEQUENCE DELIVERY_SEQ START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE ITEM_SEQ START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE CATEGORY_SEQ START WITH 1 INCREMENT BY 20;
+CREATE SEQUENCE OUTBOX_SEQ START WITH 1 INCREMENT BY 50;
+
+-- 주문 이벤트 아웃박스 (OutboxRelay) - findBatch 는 기본 키 인덱스 순서로 읽는다
+CREATE TABLE OUTBOX_EVENT (
+    OUTBOX_EVENT_ID BIGINT NOT NULL PRIMARY KEY,
+    EVENTTYPE VARCHAR(32),
+    ORDERID BIGINT,
+    MEMBERID BIGINT,
+    CREATEDDATE TIMESTAMP,
+    ATTEMPTS INT DEFAULT 0 NOT NULL
+);
+-- 전달에 jpashop.outbox.max-attempts 번 실패한 이벤트 (다시 전달하려면 OUTBOX_EVENT 로 옮긴다)
+CREATE TABLE OUTBOX_DEAD_LETTER (
+    OUTBOX_EVENT_ID BIGINT NOT NULL PRIMARY KEY,
+    EVENTTYPE VARCHAR(32),
+    ORDERID BIGINT,
+    MEMBERID BIGINT,
+    CREATEDDATE TIMESTAMP,
+    ATTEMPTS INT NOT NULL,
+    LASTERROR VARCHAR(1000),
+    PARKEDDATE TIMESTAMP
+);
+
+-- 메모리 재고 엔진이 ITEM 에 아직 반영하지 않은 재고 변화량 (StockReservationEngine)
+CREATE SEQUENCE STOCK_DELTA_SEQ START WITH 1 INCREMENT BY 100;
+CREATE TABLE STOCK_DELTA (
+    STOCK_DELTA_ID BIGINT NOT NULL PRIMARY KEY,
+    ITEM_ID BIGINT,
+    QUANTITY INT NOT NULL
+);
+-- 다른 샤드의 변화량을 ITEM 에 반영했다는 기록 (전역 샤드, 샤드마다 한 줄)
+CREATE TABLE STOCK_FLUSH (
+    SHARD_NO INT NOT NULL PRIMARY KEY,
+    DELTA_IDS CLOB NOT NULL
+);
+
+-- 주문 목록 키셋 페이징 (주문시간, 주문 ID)
+CREATE INDEX IDX_ORDERS_ORDER_DATE_ID ON ORDERS (ORDERDATE, ORDER_ID);
+
+-- 회원 이름 중복 방지
+ALTER TABLE MEMBER ADD CONSTRAINT UK_MEMBER_NAME UNIQUE (NAME);
+
+-- 주문 샤드 (jpashop.shard.enabled=true)
+-- 모든 샤드에 같은 스키마를 만든다. 다른 샤드의 MEMBER / ITEM 은 GlobalReplicator 가 채운다 (CATEGORY 는 비어 있다).
+-- 샤드 i 의 주문 시퀀스는 (i << 40) + 1 부터 시작해서 주문 ID 로 샤드를 찾을 수 있게 한다 (OrderShards.SHARD_ID_BITS).
+-- 할당 구간은 샤드별로 따로 두므로(ShardSequenceGenerator) 샤드 i 의 ID 는 샤드 i 의 시퀀스에서만 나온다.
+-- 예) 1 번 샤드
+-- CREATE SEQUENCE ORDERS_SEQ START WITH 1099511627777 INCREMENT BY 50;
+-- CREATE SEQUENCE ORDER_ITEM_SEQ START WITH 1099511627777 INCREMENT BY 100;
+-- CREATE SEQUENCE DELIVERY_SEQ START WITH 1099511627777 INCREMENT BY 50;
+
+-- 주문 총액 (Order.totalPrice) 추가 및 기존 주문 채우기
+-- 가격 * 수량의 합은 INT 를 넘을 수 있으므로 BIGINT 로 곱하고 더한다
+ALTER TABLE ORDERS ADD COLUMN TOTALPRICE BIGINT DEFAULT 0 NOT NULL;
+UPDATE ORDERS O SET TOTALPRICE = (
+    SELECT COALESCE(SUM(CAST(OI.ORDERPRICE AS BIGINT) * OI.COUNT), 0) FROM ORDER_ITEM OI WHERE OI.ORDER_ID = O.ORDER_ID);
+CREATE INDEX IDX_ORDERS_TOTAL_PRICE ON ORDERS (TOTALPRICE);
+
+-- 낙관적 락 버전 (@Version)
+ALTER TABLE ITEM ADD COLUMN VERSION BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ORDERS ADD COLUMN VERSION BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE DELIVERY ADD COLUMN VERSION BIGINT DEFAULT 0 NOT NULL;
+
+-- 상품별 일 판매 집계 (ItemSalesService)
+-- 변화량은 아웃박스 전달 시 INSERT 만 하고, 압축 작업이 ITEM_SALES_DAILY 로 합친 뒤 지운다.
+CREATE SEQUENCE ITEM_SALES_DELTA_SEQ START WITH 1 INCREMENT BY 50;
+CREATE TABLE ITEM_SALES_DELTA (
+    ITEM_SALES_DELTA_ID BIGINT NOT NULL PRIMARY KEY,
+    ITEM_ID BIGINT,
+    SALES_DATE DATE,
+    QUANTITY BIGINT NOT NULL,
+    REVENUE BIGINT NOT NULL,
+    CANCELEDQUANTITY BIGINT NOT NULL,
+    CANCELEDREVENUE BIGINT NOT NULL
+);
+CREATE TABLE ITEM_SALES_DAILY (
+    ITEM_ID BIGINT NOT NULL,
+    SALES_DATE DATE NOT NULL,
+    QUANTITY BIGINT NOT NULL,
+    REVENUE BIGINT NOT NULL,
+    CANCELEDQUANTITY BIGINT NOT NULL,
+    CANCELEDREVENUE BIGINT NOT NULL,
+    PRIMARY KEY (ITEM_ID, SALES_DATE)
+);
+CREATE INDEX IDX_ITEM_SALES_DAILY_DATE ON ITEM_SALES_DAILY (SALES_DATE);
+-- 기존 주문 채우기 (전달 대기 중인 아웃박스 이벤트가 없을 때 실행한다, ORDERDATE 는 ItemSalesDelta.SALES_ZONE 시각이어야 한다)
+INSERT INTO ITEM_SALES_DAILY (ITEM_ID, SALES_DATE, QUANTITY, REVENUE, CANCELEDQUANTITY, CANCELEDREVENUE)
+SELECT OI.ITEM_ID, CAST(O.ORDERDATE AS DATE),
+    SUM(OI.COUNT), SUM(CAST(OI.ORDERPRICE AS BIGINT) * OI.COUNT),
+    SUM(CASE WHEN O.STATUS = 'CANCEL' THEN OI.COUNT ELSE 0 END),
+    SUM(CASE WHEN O.STATUS = 'CANCEL' THEN CAST(OI.ORDERPRICE AS BIGINT) * OI.COUNT ELSE 0 END)
+FROM ORDER_ITEM OI JOIN ORDERS O ON OI.ORDER_ID = O.ORDER_ID
+GROUP BY OI.ITEM_ID, CAST(O.ORDERDATE AS DATE);
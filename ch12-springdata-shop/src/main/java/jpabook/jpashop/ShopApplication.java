@@ -0,0 +1,16 @@
+package jpabook.jpashop;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * 쇼핑몰 웹 애플리케이션 (./gradlew :ch12-springdata-shop:bootRun, 가상 스레드 모드는 bootRunVirtual)
+ * 데이터베이스와 JPA 설정은 application.properties 에 있다. Main 은 persistence.xml 로 JPA 만 쓰는 예제다.
+ */
+@SpringBootApplication
+public class ShopApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ShopApplication.class, args);
+    }
+}
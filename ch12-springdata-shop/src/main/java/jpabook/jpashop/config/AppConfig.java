@@ -2,7 +2,9 @@ package jpabook.jpashop.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
 @EnableJpaRepositories(basePackages = "jpabook.jpashop.repository")
+@EnableScheduling
 public class AppConfig {}
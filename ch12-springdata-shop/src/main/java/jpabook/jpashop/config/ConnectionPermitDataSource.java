@@ -0,0 +1,102 @@
+package jpabook.jpashop.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * 동시에 열 수 있는 커넥션 수를 허가(permit) 수로 제한하는 데이터소스
+ *
+ * 가상 스레드는 요청마다 만들어지므로 수천 개가 한꺼번에 커넥션 풀로 몰린다. 풀 앞에서 공정한 세마포어로 줄을 세워
+ * 풀 크기만큼만 들여보내고, 나머지는 커넥션을 기다리는 동안 캐리어 스레드를 놓아준다.
+ * 커넥션을 닫으면(풀에 돌려주면) 허가를 반납한다.
+ *
+ * 메트릭: jpashop.vthreads.connection.waiting (허가를 기다리는 스레드 수)
+ */
+public class ConnectionPermitDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final long maxWaitMillis;
+
+    public ConnectionPermitDataSource(DataSource target, int permits, long maxWaitMillis, MeterRegistry meterRegistry) {
+        super(target);
+        this.permits = new Semaphore(permits, true);
+        this.maxWaitMillis = maxWaitMillis;
+        Gauge.builder("jpashop.vthreads.connection.waiting", this.permits, Semaphore::getQueueLength)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return permitted(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return permitted(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws SQLException {
+
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                    "커넥션 허가를 " + maxWaitMillis + "ms 안에 얻지 못했습니다. waiting=" + permits.getQueueLength());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("커넥션 허가를 기다리는 중 중단되었습니다.", e);
+        }
+    }
+
+    /**
+     * close 할 때 허가를 한 번만 반납하는 커넥션
+     */
+    private Connection permitted(Connection connection) {
+
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                try {
+                    return invoke(connection, method, args);
+                } finally {
+                    permits.release();
+                }
+            }
+            return invoke(connection, method, args);
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, handler);
+    }
+
+    private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package jpabook.jpashop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * 읽기/쓰기 분리 데이터소스 (jpashop.datasource.routing.enabled=true 일 때)
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceRoutingProperties properties,
+        MeterRegistry meterRegistry) {
+
+        DataSource primary = createPool("primary", properties.getPrimary(), meterRegistry);
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            replicas.add(createPool("replica-" + i, properties.getReplicas().get(i), meterRegistry));
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas, properties.getReplicaLagQuery(),
+            properties.getMaxReplicaLagMillis(), properties.getHealthCheckTimeoutMillis(), meterRegistry);
+    }
+
+    /**
+     * 트랜잭션 시작 시점이 아니라 첫 SQL 실행 시점에 커넥션을 얻어야 readOnly 여부로 라우팅할 수 있다.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    //풀별 메트릭은 hikaricp.* (pool 태그)
+    private HikariDataSource createPool(String name, DataSourceRoutingProperties.Pool pool, MeterRegistry meterRegistry) {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(pool.getUrl());
+        dataSource.setUsername(pool.getUsername());
+        dataSource.setPassword(pool.getPassword());
+        dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+        dataSource.setMetricRegistry(meterRegistry);
+        return dataSource;
+    }
+}
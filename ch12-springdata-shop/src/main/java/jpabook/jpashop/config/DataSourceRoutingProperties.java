@@ -0,0 +1,111 @@
+package jpabook.jpashop.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 읽기/쓰기 분리 데이터소스 설정 (jpashop.datasource.*)
+ */
+@ConfigurationProperties(prefix = "jpashop.datasource")
+public class DataSourceRoutingProperties {
+
+    private Pool primary = new Pool();
+    private List<Pool> replicas = new ArrayList<>();
+
+    //복제 지연(ms)을 돌려주는 쿼리, 비어 있으면 연결 여부만 확인한다
+    private String replicaLagQuery;
+    private long maxReplicaLagMillis = 1000;
+    //복제본 상태 확인 한 번에 기다리는 최대 시간, 넘으면 쓸 수 없는 복제본으로 본다
+    private long healthCheckTimeoutMillis = 1000;
+    //쓰기 요청 뒤 이 시간 동안 같은 클라이언트의 읽기를 주 데이터베이스로 보낸다 (0 이면 끈다)
+    private long readYourWritesMillis = 3000;
+
+    public static class Pool {
+
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 10;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+
+    public Pool getPrimary() {
+        return primary;
+    }
+
+    public void setPrimary(Pool primary) {
+        this.primary = primary;
+    }
+
+    public List<Pool> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Pool> replicas) {
+        this.replicas = replicas;
+    }
+
+    public String getReplicaLagQuery() {
+        return replicaLagQuery;
+    }
+
+    public void setReplicaLagQuery(String replicaLagQuery) {
+        this.replicaLagQuery = replicaLagQuery;
+    }
+
+    public long getMaxReplicaLagMillis() {
+        return maxReplicaLagMillis;
+    }
+
+    public void setMaxReplicaLagMillis(long maxReplicaLagMillis) {
+        this.maxReplicaLagMillis = maxReplicaLagMillis;
+    }
+
+    public long getHealthCheckTimeoutMillis() {
+        return healthCheckTimeoutMillis;
+    }
+
+    public void setHealthCheckTimeoutMillis(long healthCheckTimeoutMillis) {
+        this.healthCheckTimeoutMillis = healthCheckTimeoutMillis;
+    }
+
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+
+    public void setReadYourWritesMillis(long readYourWritesMillis) {
+        this.readYourWritesMillis = readYourWritesMillis;
+    }
+}
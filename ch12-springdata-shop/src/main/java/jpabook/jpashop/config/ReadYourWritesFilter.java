@@ -0,0 +1,81 @@
+package jpabook.jpashop.config;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * 쓰기 직후의 읽기를 주 데이터베이스로 보낸다 (읽기/쓰기 분리를 켰을 때)
+ *
+ * GET/HEAD/OPTIONS 가 아닌 요청을 받으면 readYourWritesMillis 뒤의 시각을 쿠키로 내려보내고, 그 시각 전까지 같은
+ * 클라이언트의 요청은 ReplicaRoutingDataSource.pinPrimary 로 읽기 전용 트랜잭션도 주 데이터베이스를 쓰게 한다.
+ * 그래서 POST /order 뒤 리다이렉트된 주문 목록에 복제 지연과 상관없이 방금 한 주문이 보인다.
+ */
+@Component
+@ConditionalOnProperty(name = "jpashop.datasource.routing.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "JPASHOP_PRIMARY_UNTIL";
+
+    @Autowired DataSourceRoutingProperties properties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+        FilterChain filterChain) throws ServletException, IOException {
+
+        long window = properties.getReadYourWritesMillis();
+        if (window <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean pinned = primaryUntil(request) > now;
+        if (isWrite(request)) {
+            //응답이 커밋되기 전에(리다이렉트 포함) 쿠키를 붙인다
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(now + window));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, window / 1000 + 1));
+            response.addCookie(cookie);
+            pinned = true;
+        }
+
+        ReplicaRoutingDataSource.pinPrimary(pinned);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.pinPrimary(false);
+        }
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
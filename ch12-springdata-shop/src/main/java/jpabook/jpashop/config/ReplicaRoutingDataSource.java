@@ -0,0 +1,175 @@
+package jpabook.jpashop.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 읽기 전용 트랜잭션은 복제본으로, 나머지는 주 데이터베이스로 보낸다.
+ * 복제 지연이 크거나 연결할 수 없는 복제본은 건너뛰고, 쓸 수 있는 복제본이 없으면 주 데이터베이스를 쓴다.
+ * 현재 스레드가 주 데이터베이스에 고정되어 있으면(pinPrimary, 쓰기 직후의 읽기) 읽기 전용이어도 주 데이터베이스를 쓴다.
+ *
+ * 상태 확인은 공용 스케줄러가 아닌 전용 스레드에서 1초마다 한다. 복제본마다 확인을 별도 스레드에서 돌리고,
+ * healthCheckTimeoutMillis 안에 끝나지 않으면(커넥션 풀이 막혔거나 네트워크가 멈춤) 쓸 수 없는 복제본으로 본다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    static final String PRIMARY = "primary";
+
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = 1000;
+
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = new ThreadLocal<>();
+
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final Map<String, DataSource> replicas = new HashMap<>();
+    private final Map<String, Boolean> healthy = new ConcurrentHashMap<>();
+    private final Map<String, Counter> routeCounters = new HashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final String replicaLagQuery;
+    private final long maxReplicaLagMillis;
+    private final long healthCheckTimeoutMillis;
+
+    //복제본별 진행 중인 확인과 시작 시각
+    private final Map<String, Future<?>> checks = new HashMap<>();
+    private final Map<String, Long> checkStarted = new HashMap<>();
+
+    private final ScheduledExecutorService healthCheckScheduler =
+        Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("replica-health-"));
+    private final ExecutorService healthCheckExecutor =
+        Executors.newCachedThreadPool(daemonThreadFactory("replica-check-"));
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaList, String replicaLagQuery,
+        long maxReplicaLagMillis, long healthCheckTimeoutMillis, MeterRegistry meterRegistry) {
+
+        this.replicaLagQuery = replicaLagQuery;
+        this.maxReplicaLagMillis = maxReplicaLagMillis;
+        this.healthCheckTimeoutMillis = healthCheckTimeoutMillis;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        routeCounters.put(PRIMARY, meterRegistry.counter("jpashop.datasource.route", "route", PRIMARY));
+        for (int i = 0; i < replicaList.size(); i++) {
+            String key = "replica-" + i;
+            replicaKeys.add(key);
+            replicas.put(key, replicaList.get(i));
+            healthy.put(key, Boolean.TRUE);
+            targets.put(key, replicaList.get(i));
+            routeCounters.put(key, meterRegistry.counter("jpashop.datasource.route", "route", key));
+        }
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * 현재 스레드의 읽기를 주 데이터베이스로 보낸다 (요청이 끝나면 false 로 되돌린다)
+     */
+    public static void pinPrimary(boolean pinned) {
+        if (pinned) {
+            PRIMARY_PINNED.set(Boolean.TRUE);
+        } else {
+            PRIMARY_PINNED.remove();
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        healthCheckScheduler.scheduleWithFixedDelay(this::checkReplicas,
+            HEALTH_CHECK_INTERVAL_MILLIS, HEALTH_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        healthCheckScheduler.shutdownNow();
+        healthCheckExecutor.shutdownNow();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        String key = PRIMARY;
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && PRIMARY_PINNED.get() == null) {
+            key = nextHealthyReplica();
+        }
+        routeCounters.get(key).increment();
+        return key;
+    }
+
+    private String nextHealthyReplica() {
+
+        int size = replicaKeys.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            String key = replicaKeys.get((start + i) % size);
+            if (healthy.get(key)) {
+                return key;
+            }
+        }
+        return PRIMARY; //쓸 수 있는 복제본 없음
+    }
+
+    /**
+     * 복제본 상태 확인 (전용 스레드에서만 호출)
+     * 지난 확인이 아직 끝나지 않은 복제본은 새로 확인하지 않고, 제한 시간을 넘겼으면 쓸 수 없는 복제본으로 표시한다.
+     */
+    void checkReplicas() {
+
+        long now = System.currentTimeMillis();
+        for (String key : replicaKeys) {
+            Future<?> running = checks.get(key);
+            if (running != null && !running.isDone()) {
+                if (now - checkStarted.get(key) > healthCheckTimeoutMillis) {
+                    healthy.put(key, Boolean.FALSE);
+                }
+                continue;
+            }
+            checkStarted.put(key, now);
+            checks.put(key, healthCheckExecutor.submit(() -> healthy.put(key, isHealthy(replicas.get(key)))));
+        }
+    }
+
+    private boolean isHealthy(DataSource replica) {
+
+        int timeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(healthCheckTimeoutMillis));
+        try (Connection connection = replica.getConnection()) {
+            if (replicaLagQuery == null || replicaLagQuery.isEmpty()) {
+                return connection.isValid(timeoutSeconds);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet rs = statement.executeQuery(replicaLagQuery)) {
+                    return rs.next() && rs.getLong(1) <= maxReplicaLagMillis;
+                }
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
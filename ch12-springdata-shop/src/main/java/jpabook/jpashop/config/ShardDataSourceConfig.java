@@ -0,0 +1,59 @@
+package jpabook.jpashop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * 주문 샤드 데이터소스 (jpashop.shard.enabled=true 일 때)
+ * 읽기/쓰기 분리(jpashop.datasource.routing.enabled)와 함께 켤 수 없다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.shard.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardDataSourceConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(ShardProperties properties, MeterRegistry meterRegistry) {
+
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("jpashop.shard.shards 가 비어 있습니다.");
+        }
+
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            shards.add(createPool("shard-" + i, properties.getShards().get(i), meterRegistry));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * 첫 SQL 실행 시점에 커넥션을 얻어야 트랜잭션 안에서 정한 샤드로 보낼 수 있다.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    //풀별 메트릭은 hikaricp.* (pool 태그)
+    private HikariDataSource createPool(String name, DataSourceRoutingProperties.Pool pool, MeterRegistry meterRegistry) {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(pool.getUrl());
+        dataSource.setUsername(pool.getUsername());
+        dataSource.setPassword(pool.getPassword());
+        dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+        dataSource.setMetricRegistry(meterRegistry);
+        return dataSource;
+    }
+}
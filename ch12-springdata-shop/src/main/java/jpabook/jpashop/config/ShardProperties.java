@@ -0,0 +1,23 @@
+package jpabook.jpashop.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 주문 샤드 설정 (jpashop.shard.*)
+ * 0 번이 전역 샤드다.
+ */
+@ConfigurationProperties(prefix = "jpashop.shard")
+public class ShardProperties {
+
+    private List<DataSourceRoutingProperties.Pool> shards = new ArrayList<>();
+
+    public List<DataSourceRoutingProperties.Pool> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<DataSourceRoutingProperties.Pool> shards) {
+        this.shards = shards;
+    }
+}
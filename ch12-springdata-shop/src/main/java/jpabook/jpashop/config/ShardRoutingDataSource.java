@@ -0,0 +1,48 @@
+package jpabook.jpashop.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import jpabook.jpashop.repository.shard.OrderShards;
+import jpabook.jpashop.repository.shard.ShardContext;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 현재 스레드의 샤드(ShardContext) 데이터베이스로 보낸다. 샤드가 정해지지 않았으면 전역 샤드를 쓴다.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+
+        this.shards = new ArrayList<>(shards);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(OrderShards.GLOBAL_SHARD));
+        setLenientFallback(false);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * 샤드 커넥션 풀 (트랜잭션 밖에서 직접 쓸 때)
+     */
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        return shard == null ? OrderShards.GLOBAL_SHARD : shard;
+    }
+}
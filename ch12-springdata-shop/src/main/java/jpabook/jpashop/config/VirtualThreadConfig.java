@@ -0,0 +1,104 @@
+package jpabook.jpashop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ExecutorService;
+import javax.sql.DataSource;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 가상 스레드 모드 (jpashop.virtual-threads.enabled=true 일 때, Java 21 이상)
+ *
+ * Tomcat 요청을 요청마다 만든 가상 스레드에서 처리하므로 컨트롤러부터 리포지토리(JDBC) 호출까지 가상 스레드에서 실행된다.
+ * 커넥션 풀 앞에는 ConnectionPermitDataSource 를 두어 동시에 커넥션을 쓰는 가상 스레드 수를 제한한다.
+ * H2 드라이버는 synchronized 안에서 소켓 I/O 를 하므로 JDBC 호출 중에는 캐리어 스레드가 고정(pinning)된다.
+ * 허가 수가 캐리어 수(-Djdk.virtualThreadScheduler.parallelism, 기본 CPU 코어 수)보다 크면 모든 캐리어가 JDBC 에 묶일 수 있다.
+ * 고정 현황은 PinnedThreadMonitor 가 jpashop.vthreads.pinned 로 남긴다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    //HikariConfig.DEFAULT_POOL_SIZE (private)
+    private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+    /**
+     * 요청 처리용 (컨텍스트가 닫힐 때 shutdown)
+     */
+    @Bean
+    public ExecutorService virtualThreadExecutor() {
+        return VirtualThreads.newThreadPerTaskExecutor("vt-http-");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<AbstractProtocol<?>> virtualThreadProtocolHandlerCustomizer(
+        ExecutorService virtualThreadExecutor, Environment environment) {
+
+        int maxConnections = environment.getProperty("jpashop.virtual-threads.max-connections", Integer.class, 10_000);
+        return protocolHandler -> {
+            protocolHandler.setExecutor(virtualThreadExecutor);
+            protocolHandler.setMaxConnections(maxConnections);
+        };
+    }
+
+    /**
+     * 주 데이터소스(dataSource 빈)를 ConnectionPermitDataSource 로 감싼다.
+     * 허가 수를 정하지 않으면(0) 뒤에 있는 Hikari 풀 크기의 합을 쓴다 (LazyConnectionDataSourceProxy, 복제본/샤드 라우팅을 풀어서).
+     * 풀 크기를 알 수 없는 데이터소스면 시작하지 않는다.
+     */
+    @Bean
+    public static BeanPostProcessor connectionPermitPostProcessor(Environment environment,
+        ObjectProvider<MeterRegistry> meterRegistry) {
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource)
+                    || bean instanceof ConnectionPermitDataSource) {
+                    return bean;
+                }
+
+                int permits = environment.getProperty("jpashop.virtual-threads.connection-permits", Integer.class, 0);
+                if (permits <= 0) {
+                    permits = maximumPoolSize((DataSource) bean);
+                }
+                long maxWaitMillis = environment.getProperty(
+                    "jpashop.virtual-threads.connection-wait-millis", Long.class, 30_000L);
+                return new ConnectionPermitDataSource((DataSource) bean, permits, maxWaitMillis,
+                    meterRegistry.getObject());
+            }
+        };
+    }
+
+    private static int maximumPoolSize(DataSource dataSource) {
+
+        if (dataSource instanceof HikariDataSource) {
+            //설정하지 않았으면 -1 이고 풀을 시작할 때 Hikari 기본값으로 정해진다
+            int size = ((HikariDataSource) dataSource).getMaximumPoolSize();
+            return size > 0 ? size : HIKARI_DEFAULT_POOL_SIZE;
+        }
+        if (dataSource instanceof DelegatingDataSource) {
+            return maximumPoolSize(((DelegatingDataSource) dataSource).getTargetDataSource());
+        }
+        if (dataSource instanceof AbstractRoutingDataSource) {
+            //스레드마다 대상 하나를 쓰지만 대상마다 동시에 쓸 수 있으므로 모든 풀의 합까지 허가한다
+            int sum = 0;
+            for (DataSource target : ((AbstractRoutingDataSource) dataSource).getResolvedDataSources().values()) {
+                sum += maximumPoolSize(target);
+            }
+            return sum;
+        }
+        throw new IllegalStateException("커넥션 풀 크기를 알 수 없는 데이터소스입니다 (" + dataSource.getClass().getName()
+            + "). jpashop.virtual-threads.connection-permits 를 지정하세요.");
+    }
+}
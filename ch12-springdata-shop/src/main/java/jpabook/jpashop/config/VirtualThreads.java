@@ -0,0 +1,52 @@
+package jpabook.jpashop.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 가상 스레드 (Java 21 이상)
+ *
+ * 모듈은 Java 11 로 컴파일하고(스프링 부트 2.5 가 읽을 수 있는 클래스 파일) Java 21 툴체인으로 실행하므로
+ * Java 21 API 는 리플렉션으로 부른다.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 작업마다 가상 스레드를 하나씩 만드는 실행기 (이름: namePrefix0, namePrefix1, ...)
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+
+        if (!isSupported()) {
+            throw new IllegalStateException("가상 스레드는 Java 21 이상에서 실행해야 합니다. java.version="
+                + System.getProperty("java.version"));
+        }
+
+        try {
+            //Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory())
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("가상 스레드 실행기를 만들 수 없습니다.", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("가상 스레드 실행기를 만들 수 없습니다.", e.getCause());
+        }
+    }
+}
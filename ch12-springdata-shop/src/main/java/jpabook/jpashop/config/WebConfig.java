@@ -0,0 +1,65 @@
+package jpabook.jpashop.config;
+
+import jpabook.jpashop.metrics.StatementCountInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private static final long ASYNC_TIMEOUT_MILLIS = 30_000;
+
+    //@Scheduled 작업 수 (재고 반영, 아웃박스 전달, 이름 색인 커밋, 판매 집계 압축 - 복제본 확인은 전용 스레드)
+    @Value("${jpashop.scheduler.pool-size:4}") int schedulerPoolSize;
+
+    /**
+     * 비동기 요청(DeferredResult, CompletableFuture, StreamingResponseBody) 설정
+     * 요청 스레드는 바로 반환하고 응답은 아래 실행기에서 완료한다.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(ASYNC_TIMEOUT_MILLIS);
+        configurer.setTaskExecutor(asyncTaskExecutor());
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor asyncTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("async-");
+        //요청당 SQL 수 집계를 비동기 실행기 스레드로 이어간다
+        executor.setTaskDecorator(StatementCountInspector.taskDecorator());
+        return executor;
+    }
+
+    /**
+     * @Scheduled 작업용 스케줄러 (빈 이름 taskScheduler 로 찾는다)
+     * 작업마다 스레드 하나를 두어 오래 걸리는 작업(압축, 재고 반영)이 다른 작업의 주기를 밀지 않게 한다.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulerPoolSize);
+        scheduler.setThreadNamePrefix("scheduler-");
+        return scheduler;
+    }
+
+    /**
+     * 지연 응답(DeferredResult) 완료용 스케줄러 - 결과만 넘기고 바로 끝나므로 스레드 하나로 충분하다.
+     * @Scheduled 작업이 밀려도 응답이 늦어지지 않게 따로 둔다.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler delayedResponseScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("delayed-response-");
+        return scheduler;
+    }
+}
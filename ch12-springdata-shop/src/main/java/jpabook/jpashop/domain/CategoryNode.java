@@ -0,0 +1,53 @@
+package jpabook.jpashop.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 카테고리 트리 노드 (조회 전용, 영속성 컨텍스트와 무관)
+ */
+public class CategoryNode {
+
+    private final Long id;          //카테고리 ID
+    private final Long parentId;    //상위 카테고리 ID
+    private final String name;      //이름
+    private final int depth;        //조회 시작 카테고리로부터의 깊이
+    private final List<CategoryNode> children = new ArrayList<>();
+
+    public CategoryNode(Long id, Long parentId, String name, int depth) {
+        this.id = id;
+        this.parentId = parentId;
+        this.name = name;
+        this.depth = depth;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public List<CategoryNode> getChildren() {
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        return "CategoryNode{" +
+            "id=" + id +
+            ", name='" + name + '\'' +
+            ", depth=" + depth +
+            ", children=" + children.size() +
+            '}';
+    }
+}
@@ -8,12 +8,20 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToOne;
+import javax.persistence.Version;
+import jpabook.jpashop.repository.shard.ShardSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity
+@GenericGenerator(name = "DELIVERY_SEQ_GENERATOR", strategy = "jpabook.jpashop.repository.shard.ShardSequenceGenerator",
+    parameters = {
+        @Parameter(name = ShardSequenceGenerator.SEQUENCE_NAME, value = "DELIVERY_SEQ"),
+        @Parameter(name = ShardSequenceGenerator.INCREMENT_SIZE, value = "50")})
 public class Delivery {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "DELIVERY_SEQ_GENERATOR")
     @Column(name = "DELIVERY_ID")
     private Long id;
 
@@ -26,6 +34,9 @@ public class Delivery {
     @Enumerated(EnumType.STRING)
     private DeliveryStatus status;
 
+    @Version
+    private Long version;       //낙관적 락
+
     public Delivery() {
     }
 
@@ -66,6 +77,10 @@ public class Delivery {
         this.status = status;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return "Delivery{" +
@@ -0,0 +1,52 @@
+package jpabook.jpashop.domain;
+
+/**
+ * 상품 목록 조회 전용 DTO (리액티브 조회)
+ */
+public class ItemListDto {
+
+    private Long itemId;            //상품 ID
+    private String itemType;        //상품 종류 (DTYPE: A 음반, B 도서, M 영화)
+    private String name;            //이름
+    private int price;              //가격
+    private int stockQuantity;      //재고수량
+
+    public ItemListDto(Long itemId, String itemType, String name, int price, int stockQuantity) {
+        this.itemId = itemId;
+        this.itemType = itemType;
+        this.name = name;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public int getStockQuantity() {
+        return stockQuantity;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemListDto{" +
+            "itemId=" + itemId +
+            ", itemType='" + itemType + '\'' +
+            ", name='" + name + '\'' +
+            ", price=" + price +
+            ", stockQuantity=" + stockQuantity +
+            '}';
+    }
+}
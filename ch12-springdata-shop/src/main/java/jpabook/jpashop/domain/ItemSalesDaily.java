@@ -0,0 +1,73 @@
+package jpabook.jpashop.domain;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * 상품별 일 판매 집계 (상품, 주문일마다 한 줄)
+ * ItemSalesService 의 압축 작업만 갱신한다. 아직 합치지 않은 변화량은 ItemSalesDelta 에 있다.
+ */
+@Entity
+@Table(name = "ITEM_SALES_DAILY", indexes = {
+    @Index(name = "IDX_ITEM_SALES_DAILY_DATE", columnList = "SALES_DATE")})
+public class ItemSalesDaily {
+
+    @EmbeddedId
+    private ItemSalesId id;
+
+    private long quantity;          //주문 수량
+    private long revenue;           //주문 금액
+    private long canceledQuantity;  //취소 수량
+    private long canceledRevenue;   //취소 금액
+
+    public ItemSalesDaily() {
+    }
+
+    public ItemSalesDaily(ItemSalesId id) {
+        this.id = id;
+    }
+
+    //==비즈니스 로직==//
+    /**
+     * 변화량 합치기
+     */
+    public void add(ItemSalesDelta delta) {
+        this.quantity += delta.getQuantity();
+        this.revenue += delta.getRevenue();
+        this.canceledQuantity += delta.getCanceledQuantity();
+        this.canceledRevenue += delta.getCanceledRevenue();
+    }
+
+    public ItemSalesId getId() {
+        return id;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getRevenue() {
+        return revenue;
+    }
+
+    public long getCanceledQuantity() {
+        return canceledQuantity;
+    }
+
+    public long getCanceledRevenue() {
+        return canceledRevenue;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemSalesDaily{" +
+            "id=" + id +
+            ", quantity=" + quantity +
+            ", revenue=" + revenue +
+            ", canceledQuantity=" + canceledQuantity +
+            ", canceledRevenue=" + canceledRevenue +
+            '}';
+    }
+}
@@ -0,0 +1,135 @@
+package jpabook.jpashop.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import jpabook.jpashop.repository.shard.ShardSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * 상품별 일 판매 변화량 (주문상품 한 건의 주문 또는 취소)
+ * 아웃박스 이벤트를 전달하는 트랜잭션에서 INSERT 만 하고, ItemSalesService 가 주기적으로 ItemSalesDaily 에 합친 뒤 지운다.
+ */
+@Entity
+@Table(name = "ITEM_SALES_DELTA")
+@GenericGenerator(name = "ITEM_SALES_DELTA_SEQ_GENERATOR", strategy = "jpabook.jpashop.repository.shard.ShardSequenceGenerator",
+    parameters = {
+        @Parameter(name = ShardSequenceGenerator.SEQUENCE_NAME, value = "ITEM_SALES_DELTA_SEQ"),
+        @Parameter(name = ShardSequenceGenerator.INCREMENT_SIZE, value = "50")})
+public class ItemSalesDelta {
+
+    /**
+     * 판매일을 나누는 시간대. 서버 시간대와 상관없이 한국 시간 자정에 날짜가 바뀐다.
+     * schema.sql 의 기존 주문 채우기는 ORDERDATE 가 이 시간대로 저장됐다고 보고 날짜만 자른다.
+     */
+    public static final ZoneId SALES_ZONE = ZoneId.of("Asia/Seoul");
+
+    @Id
+    @GeneratedValue(generator = "ITEM_SALES_DELTA_SEQ_GENERATOR")
+    @Column(name = "ITEM_SALES_DELTA_ID")
+    private Long id;
+
+    @Column(name = "ITEM_ID")
+    private Long itemId;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "SALES_DATE")
+    private Date salesDate;         //주문일 (취소도 주문일에 반영한다)
+
+    private long quantity;          //주문 수량
+    private long revenue;           //주문 금액
+    private long canceledQuantity;  //취소 수량
+    private long canceledRevenue;   //취소 금액
+
+    public ItemSalesDelta() {
+    }
+
+    //==생성 메서드==//
+    public static ItemSalesDelta ordered(Long itemId, Date orderDate, int orderPrice, int count) {
+
+        ItemSalesDelta delta = of(itemId, orderDate);
+        delta.quantity = count;
+        delta.revenue = (long) orderPrice * count;
+        return delta;
+    }
+
+    public static ItemSalesDelta canceled(Long itemId, Date orderDate, int orderPrice, int count) {
+
+        ItemSalesDelta delta = of(itemId, orderDate);
+        delta.canceledQuantity = count;
+        delta.canceledRevenue = (long) orderPrice * count;
+        return delta;
+    }
+
+    private static ItemSalesDelta of(Long itemId, Date orderDate) {
+
+        ItemSalesDelta delta = new ItemSalesDelta();
+        delta.itemId = itemId;
+        delta.salesDate = dayOf(orderDate);
+        return delta;
+    }
+
+    /**
+     * SALES_ZONE 기준 판매일.
+     * DATE 컬럼에 바인딩할 때 JVM 기본 시간대로 날짜를 읽으므로 그 날짜의 기본 시간대 자정으로 돌려준다.
+     */
+    public static Date dayOf(Date date) {
+
+        LocalDate day = Instant.ofEpochMilli(date.getTime()).atZone(SALES_ZONE).toLocalDate();
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public ItemSalesId getSalesId() {
+        return new ItemSalesId(itemId, salesDate);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public Date getSalesDate() {
+        return salesDate;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getRevenue() {
+        return revenue;
+    }
+
+    public long getCanceledQuantity() {
+        return canceledQuantity;
+    }
+
+    public long getCanceledRevenue() {
+        return canceledRevenue;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemSalesDelta{" +
+            "id=" + id +
+            ", itemId=" + itemId +
+            ", salesDate=" + salesDate +
+            ", quantity=" + quantity +
+            ", revenue=" + revenue +
+            ", canceledQuantity=" + canceledQuantity +
+            ", canceledRevenue=" + canceledRevenue +
+            '}';
+    }
+}
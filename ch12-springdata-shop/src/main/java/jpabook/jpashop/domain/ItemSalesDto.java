@@ -0,0 +1,84 @@
+package jpabook.jpashop.domain;
+
+import java.util.Date;
+
+/**
+ * 판매 합계 (상품별이면 itemId, 일별이면 salesDate 만 있다)
+ */
+public class ItemSalesDto {
+
+    private final Long itemId;              //상품 ID
+    private final Date salesDate;           //주문일
+    private final Long quantity;            //주문 수량
+    private final Long revenue;             //주문 금액
+    private final Long canceledQuantity;    //취소 수량
+    private final Long canceledRevenue;     //취소 금액
+
+    public ItemSalesDto(Long itemId, Long quantity, Long revenue, Long canceledQuantity, Long canceledRevenue) {
+        this(itemId, null, quantity, revenue, canceledQuantity, canceledRevenue);
+    }
+
+    public ItemSalesDto(Date salesDate, Long quantity, Long revenue, Long canceledQuantity, Long canceledRevenue) {
+        this(null, salesDate, quantity, revenue, canceledQuantity, canceledRevenue);
+    }
+
+    private ItemSalesDto(Long itemId, Date salesDate, Long quantity, Long revenue, Long canceledQuantity,
+        Long canceledRevenue) {
+        this.itemId = itemId;
+        this.salesDate = salesDate;
+        this.quantity = quantity;
+        this.revenue = revenue;
+        this.canceledQuantity = canceledQuantity;
+        this.canceledRevenue = canceledRevenue;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public Date getSalesDate() {
+        return salesDate;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public Long getRevenue() {
+        return revenue;
+    }
+
+    public Long getCanceledQuantity() {
+        return canceledQuantity;
+    }
+
+    public Long getCanceledRevenue() {
+        return canceledRevenue;
+    }
+
+    /**
+     * 취소를 뺀 매출
+     */
+    public long getNetRevenue() {
+        return revenue - canceledRevenue;
+    }
+
+    /**
+     * 취소율 (수량 기준)
+     */
+    public double getCancelRate() {
+        return quantity == 0 ? 0 : (double) canceledQuantity / quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemSalesDto{" +
+            "itemId=" + itemId +
+            ", salesDate=" + salesDate +
+            ", quantity=" + quantity +
+            ", revenue=" + revenue +
+            ", canceledQuantity=" + canceledQuantity +
+            ", canceledRevenue=" + canceledRevenue +
+            '}';
+    }
+}
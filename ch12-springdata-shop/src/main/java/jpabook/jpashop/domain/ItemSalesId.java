@@ -0,0 +1,76 @@
+package jpabook.jpashop.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * 상품별 일 판매 집계 키 (상품, 주문일)
+ */
+@Embeddable
+public class ItemSalesId implements Serializable {
+
+    @Column(name = "ITEM_ID")
+    private Long itemId;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "SALES_DATE")
+    private Date salesDate;
+
+    public ItemSalesId() {
+    }
+
+    public ItemSalesId(Long itemId, Date salesDate) {
+        this.itemId = itemId;
+        this.salesDate = salesDate;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public Date getSalesDate() {
+        return salesDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ItemSalesId)) {
+            return false;
+        }
+        ItemSalesId that = (ItemSalesId) o;
+        //DB 에서 읽은 java.sql.Date 와 java.util.Date 를 같은 날짜로 비교
+        return Objects.equals(itemId, that.itemId)
+            && Objects.equals(dayOf(salesDate), dayOf(that.salesDate));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(itemId, dayOf(salesDate));
+    }
+
+    /**
+     * DATE 컬럼과 같은 기준(JVM 기본 시간대)의 날짜 (기본 생성자로 만든 키는 null)
+     */
+    private static LocalDate dayOf(Date date) {
+        return date == null ? null : Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    @Override
+    public String toString() {
+        return "ItemSalesId{" +
+            "itemId=" + itemId +
+            ", salesDate=" + salesDate +
+            '}';
+    }
+}
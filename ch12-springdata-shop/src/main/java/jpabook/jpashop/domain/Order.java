@@ -11,18 +11,29 @@ import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
+import jpabook.jpashop.repository.shard.ShardSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity
-@Table(name = "ORDERS")
+@Table(name = "ORDERS", indexes = {
+    @Index(name = "IDX_ORDERS_ORDER_DATE_ID", columnList = "orderDate, ORDER_ID"),
+    @Index(name = "IDX_ORDERS_TOTAL_PRICE", columnList = "totalPrice")})
+@GenericGenerator(name = "ORDERS_SEQ_GENERATOR", strategy = "jpabook.jpashop.repository.shard.ShardSequenceGenerator",
+    parameters = {
+        @Parameter(name = ShardSequenceGenerator.SEQUENCE_NAME, value = "ORDERS_SEQ"),
+        @Parameter(name = ShardSequenceGenerator.INCREMENT_SIZE, value = "50")})
 public class Order {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "ORDERS_SEQ_GENERATOR")
     @Column(name = "ORDER_ID")
     private Long id;
 
@@ -39,9 +50,14 @@ public class Order {
 
     private Date orderDate;     //주문시간
 
+    private long totalPrice;    //주문 총액 (주문상품 합계, 목록/정렬에서 ORDER_ITEM 을 읽지 않는다)
+
     @Enumerated(EnumType.STRING)
     private OrderStatus status;//주문상태
 
+    @Version
+    private Long version;       //낙관적 락
+
     //==생성 메서드==//
     public static Order createOrder(Member member, Delivery delivery, OrderItem... orderItems) {
 
@@ -63,14 +79,27 @@ public class Order {
      */
     public void cancel() {
 
+        cancelWithoutRestock();
+        for (OrderItem orderItem : orderItems) {
+            orderItem.cancel();
+        }
+    }
+
+    /**
+     * 주문 취소 (재고 복구는 호출하는 쪽에서 처리)
+     */
+    public void cancelWithoutRestock() {
+
+        //동시에 취소해서 충돌 재시도로 다시 들어온 경우도 여기서 막는다 (재고를 두 번 복구하지 않도록)
+        if (status == OrderStatus.CANCEL) {
+            throw new IllegalStateException("이미 취소된 주문입니다.");
+        }
         if (delivery.getStatus() == DeliveryStatus.COMP) {
             throw new RuntimeException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
 
+        //주문상품은 그대로 남으므로 총액(totalPrice)은 바꾸지 않는다 (집계에서는 상태로 거른다)
         this.setStatus(OrderStatus.CANCEL);
-        for (OrderItem orderItem : orderItems) {
-            orderItem.cancel();
-        }
     }
 
     //==조회 로직==//
@@ -78,11 +107,7 @@ public class Order {
     /**
      * 전체 주문 가격 조회
      */
-    public int getTotalPrice() {
-        int totalPrice = 0;
-        for (OrderItem orderItem : orderItems) {
-            totalPrice += orderItem.getTotalPrice();
-        }
+    public long getTotalPrice() {
         return totalPrice;
     }
 
@@ -95,6 +120,7 @@ public class Order {
     public void addOrderItem(OrderItem orderItem) {
         orderItems.add(orderItem);
         orderItem.setOrder(this);
+        totalPrice += orderItem.getTotalPrice();
     }
 
     public void setDelivery(Delivery delivery) {
@@ -143,11 +169,16 @@ public class Order {
         this.status = status;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return "Order{" +
             "id=" + id +
             ", orderDate=" + orderDate +
+            ", totalPrice=" + totalPrice +
             ", status=" + status +
             '}';
     }
@@ -0,0 +1,57 @@
+package jpabook.jpashop.domain;
+
+import java.util.Date;
+import org.springframework.format.annotation.DateTimeFormat;
+
+/**
+ * 주문 목록 키셋 페이징 커서 (주문시간, 주문 ID)
+ */
+public class OrderCursor {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Date orderDate;     //마지막으로 읽은 주문시간
+    private Long orderId;       //마지막으로 읽은 주문 ID
+
+    public OrderCursor() {
+    }
+
+    public OrderCursor(Date orderDate, Long orderId) {
+        this.orderDate = orderDate;
+        this.orderId = orderId;
+    }
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.getOrderDate(), order.getId());
+    }
+
+    /**
+     * 첫 페이지 여부
+     */
+    public boolean isFirst() {
+        return orderDate == null || orderId == null;
+    }
+
+    public Date getOrderDate() {
+        return orderDate;
+    }
+
+    public void setOrderDate(Date orderDate) {
+        this.orderDate = orderDate;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderCursor{" +
+            "orderDate=" + orderDate +
+            ", orderId=" + orderId +
+            '}';
+    }
+}
@@ -0,0 +1,55 @@
+package jpabook.jpashop.domain;
+
+import java.util.Date;
+
+/**
+ * 구독자에게 전달하는 주문 이벤트 (@EventListener 로 받는다)
+ * 최소 한 번 전달하므로 같은 eventId 가 다시 올 수 있다.
+ */
+public class OrderEvent {
+
+    private final Long eventId;
+    private final OutboxEventType eventType;
+    private final Long orderId;
+    private final Long memberId;
+    private final Date createdDate;
+
+    public OrderEvent(OutboxEvent outboxEvent) {
+        this.eventId = outboxEvent.getId();
+        this.eventType = outboxEvent.getEventType();
+        this.orderId = outboxEvent.getOrderId();
+        this.memberId = outboxEvent.getMemberId();
+        this.createdDate = outboxEvent.getCreatedDate();
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public OutboxEventType getEventType() {
+        return eventType;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public Long getMemberId() {
+        return memberId;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderEvent{" +
+            "eventId=" + eventId +
+            ", eventType=" + eventType +
+            ", orderId=" + orderId +
+            ", memberId=" + memberId +
+            ", createdDate=" + createdDate +
+            '}';
+    }
+}
@@ -9,13 +9,20 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.shard.ShardSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity
 @Table(name = "ORDER_ITEM")
+@GenericGenerator(name = "ORDER_ITEM_SEQ_GENERATOR", strategy = "jpabook.jpashop.repository.shard.ShardSequenceGenerator",
+    parameters = {
+        @Parameter(name = ShardSequenceGenerator.SEQUENCE_NAME, value = "ORDER_ITEM_SEQ"),
+        @Parameter(name = ShardSequenceGenerator.INCREMENT_SIZE, value = "100")})
 public class OrderItem {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "ORDER_ITEM_SEQ_GENERATOR")
     @Column(name = "ORDER_ITEM_ID")
     private Long id;
 
@@ -33,12 +40,21 @@ public class OrderItem {
     //==생성 메서드==//
     public static OrderItem createOrderItem(Item item, int orderPrice, int count) {
 
+        OrderItem orderItem = createReservedOrderItem(item, orderPrice, count);
+
+        item.removeStock(count);
+        return orderItem;
+    }
+
+    /**
+     * 재고를 이미 선점한 주문상품 생성 (상품 엔티티의 재고는 건드리지 않는다)
+     */
+    public static OrderItem createReservedOrderItem(Item item, int orderPrice, int count) {
+
         OrderItem orderItem = new OrderItem();
         orderItem.setItem(item);
         orderItem.setOrderPrice(orderPrice);
         orderItem.setCount(count);
-
-        item.removeStock(count);
         return orderItem;
     }
 
@@ -56,8 +72,8 @@ public class OrderItem {
     /**
      * 주문상품 전체 가격 조회
      */
-    public int getTotalPrice() {
-        return getOrderPrice() * getCount();
+    public long getTotalPrice() {
+        return (long) getOrderPrice() * getCount();
     }
 
     //==Getter, Setter==//
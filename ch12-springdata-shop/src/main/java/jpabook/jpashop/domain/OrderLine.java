@@ -0,0 +1,50 @@
+package jpabook.jpashop.domain;
+
+public class OrderLine {
+
+    private Long memberId;  //주문 회원
+    private Long itemId;    //주문 상품
+    private int count;      //주문 수량
+
+    public OrderLine() {
+    }
+
+    public OrderLine(Long memberId, Long itemId, int count) {
+        this.memberId = memberId;
+        this.itemId = itemId;
+        this.count = count;
+    }
+
+    public Long getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(Long memberId) {
+        this.memberId = memberId;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderLine{" +
+            "memberId=" + memberId +
+            ", itemId=" + itemId +
+            ", count=" + count +
+            '}';
+    }
+}
@@ -0,0 +1,69 @@
+package jpabook.jpashop.domain;
+
+import java.util.Date;
+
+/**
+ * 주문 목록 화면용 조회 전용 DTO (주문상품 한 건당 한 줄)
+ */
+public class OrderListDto {
+
+    private Long orderId;           //주문 ID
+    private String memberName;      //주문 회원 이름
+    private String itemName;        //주문 상품 이름
+    private int orderPrice;         //주문 가격
+    private int count;              //주문 수량
+    private OrderStatus status;     //주문상태
+    private Date orderDate;         //주문시간
+
+    public OrderListDto(Long orderId, String memberName, String itemName, int orderPrice, int count,
+        OrderStatus status, Date orderDate) {
+        this.orderId = orderId;
+        this.memberName = memberName;
+        this.itemName = itemName;
+        this.orderPrice = orderPrice;
+        this.count = count;
+        this.status = status;
+        this.orderDate = orderDate;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public String getMemberName() {
+        return memberName;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public int getOrderPrice() {
+        return orderPrice;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public Date getOrderDate() {
+        return orderDate;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderListDto{" +
+            "orderId=" + orderId +
+            ", memberName='" + memberName + '\'' +
+            ", itemName='" + itemName + '\'' +
+            ", orderPrice=" + orderPrice +
+            ", count=" + count +
+            ", status=" + status +
+            ", orderDate=" + orderDate +
+            '}';
+    }
+}
@@ -1,16 +1,29 @@
 package jpabook.jpashop.domain;
 
+import static jpabook.jpashop.domain.OrderSpec.memberIdEq;
 import static jpabook.jpashop.domain.OrderSpec.memberNameLike;
 import static jpabook.jpashop.domain.OrderSpec.orderStatusEq;
 import static org.springframework.data.jpa.domain.Specification.where;
 
+import java.util.List;
 import org.springframework.data.jpa.domain.Specification;
 
 public class OrderSearch {
 
+    private Long memberId;          //회원 ID (있으면 그 회원의 샤드만 조회)
     private String memberName;      //회원 이름
     private OrderStatus orderStatus;//주문 상태
 
+    private List<Long> memberIds;   //이름 색인으로 찾은 회원 ID (있으면 memberName 대신 IN 조건)
+
+    public Long getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(Long memberId) {
+        this.memberId = memberId;
+    }
+
     public String getMemberName() {
         return memberName;
     }
@@ -27,8 +40,25 @@ public class OrderSearch {
         this.orderStatus = orderStatus;
     }
 
+    public List<Long> getMemberIds() {
+        return memberIds;
+    }
+
+    /**
+     * 회원 이름 조건을 회원 ID 목록으로 바꾼 복사본 (샤드별로 동시에 쓰이므로 원본은 바꾸지 않는다)
+     */
+    public OrderSearch withMemberIds(List<Long> memberIds) {
+
+        OrderSearch resolved = new OrderSearch();
+        resolved.setMemberId(memberId);
+        resolved.setOrderStatus(orderStatus);
+        resolved.memberIds = memberIds;
+        return resolved;
+    }
+
     public Specification<Order> toSpecification() {
-        return where(memberNameLike(memberName))
+        return where(memberIdEq(memberId))
+                .and(memberNameLike(memberName))
                 .and(orderStatusEq(orderStatus));
     }
 
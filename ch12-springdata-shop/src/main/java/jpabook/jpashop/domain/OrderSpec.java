@@ -11,6 +11,20 @@ import org.springframework.util.StringUtils;
 
 public class OrderSpec {
 
+    public static Specification<Order> memberIdEq(final Long memberId) {
+        return new Specification<Order>() {
+            public Predicate toPredicate(Root<Order> root, CriteriaQuery<?> query,
+                CriteriaBuilder builder) {
+
+                if (memberId == null) {
+                    return null;
+                }
+
+                return builder.equal(root.get("member").get("id"), memberId);
+            }
+        };
+    }
+
     public static Specification<Order> memberNameLike(final String memberName) {
         return new Specification<Order>() {
             public Predicate toPredicate(Root<Order> root, CriteriaQuery<?> query,
@@ -0,0 +1,39 @@
+package jpabook.jpashop.domain;
+
+/**
+ * 상태별 주문 합계 (ORDERS.totalPrice 로 집계, ORDER_ITEM 을 읽지 않는다)
+ * 매출은 ORDER 합계이고, CANCEL 합계는 취소된 주문 금액이다.
+ */
+public class OrderTotalDto {
+
+    private final OrderStatus status;   //주문 상태
+    private final Long orderCount;      //주문 수
+    private final Long totalPrice;      //주문 총액 합계
+
+    public OrderTotalDto(OrderStatus status, Long orderCount, Long totalPrice) {
+        this.status = status;
+        this.orderCount = orderCount;
+        this.totalPrice = totalPrice;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public Long getOrderCount() {
+        return orderCount;
+    }
+
+    public Long getTotalPrice() {
+        return totalPrice;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderTotalDto{" +
+            "status=" + status +
+            ", orderCount=" + orderCount +
+            ", totalPrice=" + totalPrice +
+            '}';
+    }
+}
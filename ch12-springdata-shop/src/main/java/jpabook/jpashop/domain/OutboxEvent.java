@@ -0,0 +1,109 @@
+package jpabook.jpashop.domain;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import jpabook.jpashop.repository.shard.ShardSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * 주문 이벤트 아웃박스
+ * 주문과 같은 트랜잭션에 저장하고, OutboxRelay 가 커밋된 이벤트를 구독자에게 전달한 뒤 지운다.
+ */
+@Entity
+@Table(name = "OUTBOX_EVENT")
+@GenericGenerator(name = "OUTBOX_SEQ_GENERATOR", strategy = "jpabook.jpashop.repository.shard.ShardSequenceGenerator",
+    parameters = {
+        @Parameter(name = ShardSequenceGenerator.SEQUENCE_NAME, value = "OUTBOX_SEQ"),
+        @Parameter(name = ShardSequenceGenerator.INCREMENT_SIZE, value = "50")})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(generator = "OUTBOX_SEQ_GENERATOR")
+    @Column(name = "OUTBOX_EVENT_ID")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private OutboxEventType eventType;  //이벤트 종류
+
+    private Long orderId;       //주문 ID
+    private Long memberId;      //주문 회원 ID
+    private Date createdDate;   //이벤트 발생 시간
+    private int attempts;       //전달 실패 횟수
+
+    public OutboxEvent() {
+    }
+
+    //==생성 메서드==//
+    public static OutboxEvent of(OutboxEventType eventType, Order order) {
+
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(eventType);
+        event.setOrderId(order.getId());
+        event.setMemberId(order.getMember().getId());
+        event.setCreatedDate(new Date());
+        return event;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public OutboxEventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(OutboxEventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public Long getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(Long memberId) {
+        this.memberId = memberId;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+            "id=" + id +
+            ", eventType=" + eventType +
+            ", orderId=" + orderId +
+            ", memberId=" + memberId +
+            ", createdDate=" + createdDate +
+            ", attempts=" + attempts +
+            '}';
+    }
+}
@@ -0,0 +1,5 @@
+package jpabook.jpashop.domain;
+
+public enum OutboxEventType {
+    ORDER_PLACED, ORDER_CANCELED
+}
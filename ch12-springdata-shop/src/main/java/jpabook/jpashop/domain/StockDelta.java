@@ -0,0 +1,63 @@
+package jpabook.jpashop.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import jpabook.jpashop.repository.shard.ShardSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * ITEM 재고 컬럼에 아직 반영하지 않은 재고 변화량 (선점하면 양수, 복구하면 음수)
+ * 주문 트랜잭션에서 INSERT 하고, StockReservationEngine 이 ITEM 에 반영한 뒤 지운다. 커밋된 주문의 차감량은
+ * 서버가 죽어도 남아 있어서 시작할 때 반영한다.
+ */
+@Entity
+@Table(name = "STOCK_DELTA")
+@GenericGenerator(name = "STOCK_DELTA_SEQ_GENERATOR", strategy = "jpabook.jpashop.repository.shard.ShardSequenceGenerator",
+    parameters = {
+        @Parameter(name = ShardSequenceGenerator.SEQUENCE_NAME, value = "STOCK_DELTA_SEQ"),
+        @Parameter(name = ShardSequenceGenerator.INCREMENT_SIZE, value = "100")})
+public class StockDelta {
+
+    @Id
+    @GeneratedValue(generator = "STOCK_DELTA_SEQ_GENERATOR")
+    @Column(name = "STOCK_DELTA_ID")
+    private Long id;
+
+    @Column(name = "ITEM_ID")
+    private Long itemId;
+
+    private int quantity;   //차감량 (복구면 음수)
+
+    public StockDelta() {
+    }
+
+    public StockDelta(Long itemId, int quantity) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "StockDelta{" +
+            "id=" + id +
+            ", itemId=" + itemId +
+            ", quantity=" + quantity +
+            '}';
+    }
+}
@@ -0,0 +1,42 @@
+package jpabook.jpashop.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate 통계 (엔티티 로드/페치, 플러시, 2차 캐시 적중/실패, 쿼리 계획 캐시 적중/실패, SQL 수 등)
+ * 꺼져 있으면 Hibernate 통계 수집 자체를 하지 않는다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.metrics.hibernate.enabled", havingValue = "true")
+public class HibernateMetricsConfig {
+
+    @Bean
+    public HibernateMetrics hibernateMetrics(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        //쿼리 계획 캐시 적중률 (hibernate.query.plan_cache_max_size 조정용)
+        Gauge.builder("jpashop.hibernate.query.plan.hit.ratio", statistics, HibernateMetricsConfig::planCacheHitRatio)
+            .register(meterRegistry);
+
+        return new HibernateMetrics(sessionFactory, "jpabook", Tags.empty());
+    }
+
+    private static double planCacheHitRatio(Statistics statistics) {
+
+        long hit = statistics.getQueryPlanCacheHitCount();
+        long total = hit + statistics.getQueryPlanCacheMissCount();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+}
@@ -0,0 +1,112 @@
+package jpabook.jpashop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import jdk.jfr.EventSettings;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jpabook.jpashop.config.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 가상 스레드 고정(pinning) 진단
+ *
+ * JFR jdk.VirtualThreadPinned 이벤트(synchronized 안에서 블로킹해서 캐리어 스레드를 놓지 못한 경우)를
+ * 실시간으로 받아 고정을 일으킨 첫 애플리케이션/드라이버 프레임별로 jpashop.vthreads.pinned 에 기록한다.
+ * 프레임마다 처음 한 번은 스택 전체를 경고 로그로 남긴다. (H2 드라이버의 JdbcConnection, SessionRemote 등)
+ */
+@Component
+@ConditionalOnProperty(name = "jpashop.virtual-threads.enabled", havingValue = "true")
+public class PinnedThreadMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    @Value("${jpashop.virtual-threads.pinned-threshold-millis:20}") long thresholdMillis;
+
+    @Autowired MeterRegistry meterRegistry;
+
+    private final Set<String> reportedFrames = ConcurrentHashMap.newKeySet();
+
+    private AutoCloseable stream;
+
+    @PostConstruct
+    public void start() throws Exception {
+
+        if (!VirtualThreads.isSupported()) {
+            return;
+        }
+
+        //RecordingStream 은 Java 14 이상이므로 리플렉션으로 만든다 (VirtualThreads 참고)
+        Class<?> streamType = Class.forName("jdk.jfr.consumer.RecordingStream");
+        Object recordingStream = streamType.getConstructor().newInstance();
+        EventSettings settings = (EventSettings) streamType.getMethod("enable", String.class)
+            .invoke(recordingStream, PINNED_EVENT);
+        settings.withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+
+        Consumer<RecordedEvent> handler = this::onPinned;
+        streamType.getMethod("onEvent", String.class, Consumer.class).invoke(recordingStream, PINNED_EVENT, handler);
+        streamType.getMethod("startAsync").invoke(recordingStream);
+        stream = (AutoCloseable) recordingStream;
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? List.of() : stackTrace.getFrames();
+        String frame = culprit(frames);
+
+        Timer.builder("jpashop.vthreads.pinned")
+            .tag("frame", frame)
+            .register(meterRegistry)
+            .record(event.getDuration());
+
+        if (reportedFrames.add(frame)) {
+            StringBuilder stack = new StringBuilder();
+            for (RecordedFrame recordedFrame : frames) {
+                stack.append("\n\tat ").append(name(recordedFrame)).append(':').append(recordedFrame.getLineNumber());
+            }
+            log.warn("가상 스레드가 {}ms 동안 캐리어 스레드에 고정되었습니다. frame={}{}",
+                event.getDuration().toMillis(), frame, stack);
+        }
+    }
+
+    /**
+     * JDK 내부가 아닌 첫 프레임 (고정을 일으킨 synchronized 를 가진 쪽)
+     */
+    private static String culprit(List<RecordedFrame> frames) {
+
+        for (RecordedFrame frame : frames) {
+            String name = name(frame);
+            if (!name.startsWith("java.") && !name.startsWith("jdk.") && !name.startsWith("sun.")) {
+                return name;
+            }
+        }
+        return frames.isEmpty() ? "unknown" : name(frames.get(0));
+    }
+
+    private static String name(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+}
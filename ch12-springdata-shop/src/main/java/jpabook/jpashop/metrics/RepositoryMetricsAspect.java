@@ -0,0 +1,50 @@
+package jpabook.jpashop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 리포지토리 메소드별 실행 시간 (jpashop.repository)
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "jpashop.metrics.repository.enabled", havingValue = "true")
+public class RepositoryMetricsAspect {
+
+    @Autowired MeterRegistry meterRegistry;
+
+    @Around("this(jpabook.jpashop.repository.OrderRepository)")
+    public Object orderRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("OrderRepository", joinPoint);
+    }
+
+    @Around("this(jpabook.jpashop.repository.ItemRepository)")
+    public Object itemRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("ItemRepository", joinPoint);
+    }
+
+    @Around("this(jpabook.jpashop.repository.MemberRepository)")
+    public Object memberRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("MemberRepository", joinPoint);
+    }
+
+    private Object time(String repository, ProceedingJoinPoint joinPoint) throws Throwable {
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            sample.stop(Timer.builder("jpashop.repository")
+                .tag("repository", repository)
+                .tag("method", joinPoint.getSignature().getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+    }
+}
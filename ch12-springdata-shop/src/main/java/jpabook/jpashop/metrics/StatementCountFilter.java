@@ -0,0 +1,109 @@
+package jpabook.jpashop.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * 요청당 실행한 SQL 수 (jpashop.request.statements, async 태그)
+ *
+ * 비동기 요청(CompletableFuture, StreamingResponseBody, DeferredResult)은 요청 스레드, 비동기 실행기 스레드
+ * (StatementCountInspector.taskDecorator), 결과를 다시 디스패치한 스레드의 SQL 을 합쳐서 요청이 완료될 때 기록한다.
+ * 다른 스레드가 모아서 실행한 요청(StatementCountInspector.exclude)은 jpashop.request.statements.excluded 로만 센다.
+ */
+@Component
+@ConditionalOnProperty(name = "jpashop.metrics.statements.enabled", havingValue = "true")
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private static final String COUNT_ATTRIBUTE = StatementCountFilter.class.getName() + ".count";
+
+    @Autowired MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;   //비동기 결과 디스패치에서 실행한 SQL 도 센다
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+        FilterChain filterChain) throws ServletException, IOException {
+
+        StatementCountInspector.Count count = (StatementCountInspector.Count) request.getAttribute(COUNT_ATTRIBUTE);
+        if (count == null) {
+            count = new StatementCountInspector.Count();
+            request.setAttribute(COUNT_ATTRIBUTE, count);
+        }
+
+        StatementCountInspector.attach(count);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            StatementCountInspector.attach(null);
+            if (request.isAsyncStarted()) {
+                if (!count.listening) {
+                    count.listening = true;
+                    request.getAsyncContext().addListener(new CompletionListener(request.getMethod(), count));
+                }
+            } else if (!count.listening) {
+                record(request.getMethod(), false, count);
+            }
+        }
+    }
+
+    private void record(String method, boolean async, StatementCountInspector.Count count) {
+
+        if (count.excluded) {
+            meterRegistry.counter("jpashop.request.statements.excluded", "method", method).increment();
+            return;
+        }
+        DistributionSummary.builder("jpashop.request.statements")
+            .tag("method", method)
+            .tag("async", Boolean.toString(async))
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(count.statements.get());
+    }
+
+    /**
+     * 비동기 요청이 완료(시간 초과, 오류 포함)되면 한 번 기록
+     */
+    private class CompletionListener implements AsyncListener {
+
+        private final String method;
+        private final StatementCountInspector.Count count;
+
+        CompletionListener(String method, StatementCountInspector.Count count) {
+            this.method = method;
+            this.count = count;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record(method, true, count);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            //결과 디스패치에서 다시 비동기를 시작하면 새 AsyncContext 에 다시 등록한다
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package jpabook.jpashop.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 현재 스레드에서 실행한 SQL 수를 센다.
+ * 집계는 StatementCountFilter 가 시작했을 때만 하므로 꺼져 있으면 ThreadLocal 조회 한 번이 전부다.
+ * 비동기 요청은 taskDecorator 로 실행기 스레드에 같은 카운터를 넘긴다. 여러 요청을 한 스레드에서 모아 처리하는
+ * 경우(주문 묶음 커밋)는 요청별로 나눌 수 없으므로 exclude 로 집계에서 뺀다.
+ */
+@SuppressWarnings("serial")
+public class StatementCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<Count> COUNTER = new ThreadLocal<>();
+
+    /**
+     * 요청 하나의 SQL 수 (요청 스레드와 비동기 실행기 스레드가 함께 센다)
+     */
+    static final class Count {
+
+        final AtomicInteger statements = new AtomicInteger();
+        volatile boolean excluded;  //다른 스레드에서 실행한 SQL 이 빠져 있어 기록하지 않는다
+        boolean listening;          //비동기 요청 - 완료될 때 기록한다
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Count count = COUNTER.get();
+        if (count != null) {
+            count.statements.incrementAndGet();
+        }
+        return sql;
+    }
+
+    /**
+     * 현재 요청의 SQL 수를 집계에서 뺀다 (요청의 SQL 을 다른 스레드가 모아서 실행할 때)
+     */
+    public static void exclude() {
+        Count count = COUNTER.get();
+        if (count != null) {
+            count.excluded = true;
+        }
+    }
+
+    /**
+     * 작업을 제출한 스레드의 카운터를 실행 스레드에서 쓴다 (비동기 요청 실행기용)
+     */
+    public static TaskDecorator taskDecorator() {
+        return runnable -> {
+            Count count = COUNTER.get();
+            if (count == null) {
+                return runnable;
+            }
+            return () -> {
+                Count previous = COUNTER.get();
+                COUNTER.set(count);
+                try {
+                    runnable.run();
+                } finally {
+                    attach(previous);
+                }
+            };
+        };
+    }
+
+    static void attach(Count count) {
+        if (count == null) {
+            COUNTER.remove();
+        } else {
+            COUNTER.set(count);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package jpabook.jpashop.reactive;
+
+import jpabook.jpashop.domain.ItemListDto;
+import jpabook.jpashop.domain.OrderListDto;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * 상품 목록 / 주문 검색 (WebFlux)
+ *
+ * 결과를 NDJSON(한 줄에 JSON 하나)으로 흘려보낸다. 클라이언트가 느리면 소켓 쓰기가 밀린 만큼만 DB 에서 더 읽는다.
+ */
+@Component
+@ConditionalOnProperty(name = "jpashop.reactive.enabled", havingValue = "true")
+public class CatalogHandler {
+
+    @Autowired CatalogQueries catalogQueries;
+
+    @Value("${jpashop.reactive.orders.max-limit:1000}") int maxLimit;
+
+    /**
+     * GET /items
+     */
+    public Mono<ServerResponse> items(ServerRequest request) {
+
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(catalogQueries.findItems(), ItemListDto.class);
+    }
+
+    /**
+     * GET /orders?memberId=&memberName=&orderStatus= (MVC 의 @ModelAttribute OrderSearch 와 같은 파라미터)
+     * &afterOrderId=&limit= (주문 ID 역순 페이지, limit 은 주문 건수이고 없거나 maxLimit 보다 크면 maxLimit)
+     */
+    public Mono<ServerResponse> orders(ServerRequest request) {
+
+        OrderSearch orderSearch = new OrderSearch();
+        Long afterOrderId;
+        int limit;
+        try {
+            afterOrderId = request.queryParam("afterOrderId").filter(value -> !value.isEmpty())
+                .map(Long::valueOf).orElse(null);
+            limit = request.queryParam("limit").filter(value -> !value.isEmpty())
+                .map(Integer::valueOf).orElse(maxLimit);
+            if (limit <= 0) {
+                throw new IllegalArgumentException("limit 은 1 이상이어야 합니다.");
+            }
+            request.queryParam("memberId").filter(value -> !value.isEmpty())
+                .map(Long::valueOf).ifPresent(orderSearch::setMemberId);
+            request.queryParam("memberName").ifPresent(orderSearch::setMemberName);
+            request.queryParam("orderStatus").filter(value -> !value.isEmpty())
+                .map(OrderStatus::valueOf).ifPresent(orderSearch::setOrderStatus);
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue(e.getMessage());
+        }
+
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(catalogQueries.searchOrders(orderSearch, afterOrderId, Math.min(limit, maxLimit)), OrderListDto.class);
+    }
+}
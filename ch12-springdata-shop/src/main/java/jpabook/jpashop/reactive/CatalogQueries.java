@@ -0,0 +1,140 @@
+package jpabook.jpashop.reactive;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import jpabook.jpashop.domain.ItemListDto;
+import jpabook.jpashop.domain.OrderListDto;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.search.NameIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * 상품 목록 / 주문 검색 (R2DBC, 읽기 전용)
+ *
+ * 결과를 한 줄씩 Flux 로 내보내고 구독자가 요청한 만큼만 읽는다. 주문 검색 조건은 JPA 쪽과 같은 OrderSearch 를 쓰고,
+ * 회원 이름은 이름 색인이 있으면 회원 ID 목록(IN)으로, 없으면 LOCATE 로 찾는다.
+ * H2 R2DBC 드라이버는 내부에서 블로킹 JDBC 호출을 하므로 DB 작업은 reactiveDbScheduler 에서 구독한다.
+ */
+@Component
+@ConditionalOnProperty(name = "jpashop.reactive.enabled", havingValue = "true")
+public class CatalogQueries {
+
+    private static final String ITEMS = "SELECT I.ITEM_ID, I.DTYPE, I.NAME, I.PRICE, I.STOCKQUANTITY"
+        + " FROM ITEM I ORDER BY I.ITEM_ID";
+
+    //조건에 맞는 주문을 먼저 limit 건 고르고 (주문상품이 페이지 경계에서 잘리지 않게) 주문상품과 조인한다
+    private static final String ORDER_PAGE = "SELECT O.ORDER_ID, O.STATUS, O.ORDERDATE, M.NAME AS MEMBER_NAME"
+        + " FROM ORDERS O"
+        + " JOIN MEMBER M ON O.MEMBER_ID = M.MEMBER_ID";
+
+    private static final String ORDER_ROWS = "SELECT O.ORDER_ID, O.MEMBER_NAME, I.NAME AS ITEM_NAME,"
+        + " OI.ORDERPRICE, OI.COUNT, O.STATUS, O.ORDERDATE"
+        + " FROM (%s) O"
+        + " JOIN ORDER_ITEM OI ON OI.ORDER_ID = O.ORDER_ID"
+        + " JOIN ITEM I ON OI.ITEM_ID = I.ITEM_ID"
+        + " ORDER BY O.ORDER_ID DESC, OI.ORDER_ITEM_ID";
+
+    @Autowired DatabaseClient reactiveDatabaseClient;
+    @Autowired Scheduler reactiveDbScheduler;
+    @Autowired(required = false) NameIndex nameIndex;
+
+    public Flux<ItemListDto> findItems() {
+
+        return reactiveDatabaseClient.sql(ITEMS)
+            .map((row, metadata) -> new ItemListDto(
+                row.get("ITEM_ID", Long.class),
+                row.get("DTYPE", String.class),
+                row.get("NAME", String.class),
+                row.get("PRICE", Integer.class),
+                row.get("STOCKQUANTITY", Integer.class)))
+            .all()
+            .subscribeOn(reactiveDbScheduler);
+    }
+
+    /**
+     * 주문 검색 (주문상품 한 건당 한 줄, 주문 ID 역순)
+     * 한 번에 주문 limit 건까지만 읽는다. 다음 페이지는 마지막으로 받은 주문 ID 를 afterOrderId 로 넘긴다.
+     */
+    public Flux<OrderListDto> searchOrders(OrderSearch orderSearch, Long afterOrderId, int limit) {
+        //이름 색인 조회도 이벤트 루프 밖에서
+        return Flux.defer(() -> orderRows(orderSearch, afterOrderId, limit)).subscribeOn(reactiveDbScheduler);
+    }
+
+    private Flux<OrderListDto> orderRows(OrderSearch orderSearch, Long afterOrderId, int limit) {
+
+        OrderSearch resolved = resolveMemberName(orderSearch);
+        if (resolved.getMemberIds() != null && resolved.getMemberIds().isEmpty()) {
+            return Flux.empty();    //이름이 맞는 회원 없음
+        }
+
+        StringBuilder sql = new StringBuilder(ORDER_PAGE);
+        String and = " WHERE ";
+        if (afterOrderId != null) {
+            sql.append(and).append("O.ORDER_ID < :afterOrderId");
+            and = " AND ";
+        }
+        if (resolved.getMemberId() != null) {
+            sql.append(and).append("O.MEMBER_ID = :memberId");
+            and = " AND ";
+        }
+        if (resolved.getMemberIds() != null) {
+            sql.append(and).append("O.MEMBER_ID IN (:memberIds)");
+            and = " AND ";
+        } else if (StringUtils.hasText(resolved.getMemberName())) {
+            sql.append(and).append("LOCATE(:memberName, M.NAME) > 0");
+            and = " AND ";
+        }
+        if (resolved.getOrderStatus() != null) {
+            sql.append(and).append("O.STATUS = :status");
+        }
+        sql.append(" ORDER BY O.ORDER_ID DESC LIMIT :limit");
+
+        DatabaseClient.GenericExecuteSpec spec = reactiveDatabaseClient.sql(String.format(ORDER_ROWS, sql))
+            .bind("limit", limit);
+        if (afterOrderId != null) {
+            spec = spec.bind("afterOrderId", afterOrderId);
+        }
+        if (resolved.getMemberId() != null) {
+            spec = spec.bind("memberId", resolved.getMemberId());
+        }
+        if (resolved.getMemberIds() != null) {
+            spec = spec.bind("memberIds", resolved.getMemberIds());
+        } else if (StringUtils.hasText(resolved.getMemberName())) {
+            spec = spec.bind("memberName", resolved.getMemberName());
+        }
+        if (resolved.getOrderStatus() != null) {
+            spec = spec.bind("status", resolved.getOrderStatus().name());
+        }
+
+        return spec
+            .map((row, metadata) -> new OrderListDto(
+                row.get("ORDER_ID", Long.class),
+                row.get("MEMBER_NAME", String.class),
+                row.get("ITEM_NAME", String.class),
+                row.get("ORDERPRICE", Integer.class),
+                row.get("COUNT", Integer.class),
+                OrderStatus.valueOf(row.get("STATUS", String.class)),
+                Timestamp.valueOf(row.get("ORDERDATE", LocalDateTime.class))))
+            .all();
+    }
+
+    private OrderSearch resolveMemberName(OrderSearch orderSearch) {
+
+        if (nameIndex == null || orderSearch.getMemberIds() != null
+            || !StringUtils.hasText(orderSearch.getMemberName())) {
+            return orderSearch;
+        }
+
+        List<Long> memberIds = nameIndex.findIds(NameIndex.MEMBER, orderSearch.getMemberName());
+        //맞는 회원이 없으면 색인이 아직 반영하지 못한 회원일 수 있으므로 LIKE 로 한 번 더 찾는다
+        return memberIds == null || memberIds.isEmpty() ? orderSearch : orderSearch.withMemberIds(memberIds);
+    }
+}
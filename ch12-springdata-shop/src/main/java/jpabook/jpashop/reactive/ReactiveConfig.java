@@ -0,0 +1,125 @@
+package jpabook.jpashop.reactive;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import jpabook.jpashop.repository.shard.OrderShards;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * 리액티브 조회 (jpashop.reactive.enabled=true 일 때)
+ *
+ * MVC(Tomcat) 와 따로 jpashop.reactive.port 에 Reactor Netty 서버를 띄워 상품 목록과 주문 검색만 R2DBC 로 처리한다.
+ * 쓰기는 계속 JPA 로 하고, R2DBC 는 JPA 와 같은 데이터베이스를 읽는다(jpashop.reactive.url 이 비어 있으면 JPA 데이터소스의 URL).
+ * 샤드 라우팅이 없으므로 주문 샤딩과 함께 켤 수 없다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.reactive.enabled", havingValue = "true")
+public class ReactiveConfig {
+
+    private static final String H2_URL_PREFIX = "jdbc:h2:";
+
+    @Value("${jpashop.reactive.port:8081}") int port;
+    @Value("${jpashop.reactive.url:}") String url;
+    @Value("${jpashop.reactive.password:}") String password;
+    @Value("${jpashop.reactive.pool-size:10}") int poolSize;
+
+    /**
+     * R2DBC 커넥션 풀. io.r2dbc.spi.ConnectionFactory 빈이 있으면 DataSourceAutoConfiguration 이 빠져서
+     * JPA 데이터소스와 트랜잭션 매니저가 만들어지지 않으므로 풀을 ConnectionFactory 타입으로 드러내지 않는다.
+     */
+    @Bean
+    public ReactiveConnections reactiveConnections(DataSource dataSource, OrderShards orderShards)
+        throws SQLException {
+
+        if (orderShards.isEnabled()) {
+            throw new IllegalStateException("리액티브 조회는 주문 샤딩(jpashop.shard.enabled)과 함께 켤 수 없습니다.");
+        }
+
+        String jdbcUrl = url;
+        String username = "sa";
+        if (jdbcUrl.isEmpty()) {
+            try (Connection connection = dataSource.getConnection()) {
+                DatabaseMetaData metaData = connection.getMetaData();
+                jdbcUrl = metaData.getURL();
+                username = metaData.getUserName();
+            }
+        }
+        if (!jdbcUrl.startsWith(H2_URL_PREFIX)) {
+            throw new IllegalStateException("H2 데이터베이스만 지원합니다. url=" + jdbcUrl);
+        }
+
+        H2ConnectionConfiguration configuration = H2ConnectionConfiguration.builder()
+            .url(jdbcUrl.substring(H2_URL_PREFIX.length()))
+            .username(username)
+            .password(password)
+            .build();
+        return new ReactiveConnections(new ConnectionPool(
+            ConnectionPoolConfiguration.builder(new H2ConnectionFactory(configuration))
+                .maxSize(poolSize)
+                .build()));
+    }
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(ReactiveConnections reactiveConnections) {
+        return DatabaseClient.create(reactiveConnections.pool);
+    }
+
+    /**
+     * 종료 시 커넥션 풀을 닫는다
+     */
+    public static class ReactiveConnections implements DisposableBean {
+
+        private final ConnectionPool pool;
+
+        ReactiveConnections(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void destroy() {
+            pool.dispose();
+        }
+    }
+
+    /**
+     * H2 드라이버의 블로킹 호출을 Netty 이벤트 루프 밖에서 실행 (커넥션 풀 크기만큼)
+     * 논블로킹 드라이버로 바꾸면 필요 없다.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler reactiveDbScheduler() {
+        return Schedulers.newBoundedElastic(poolSize, Integer.MAX_VALUE, "r2dbc-h2");
+    }
+
+    @Bean(destroyMethod = "disposeNow")
+    public DisposableServer reactiveServer(CatalogHandler catalogHandler) {
+
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+            .GET("/items", catalogHandler::items)
+            .GET("/orders", catalogHandler::orders)
+            .build();
+
+        return HttpServer.create()
+            .port(port)
+            .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes)))
+            .bindNow();
+    }
+}
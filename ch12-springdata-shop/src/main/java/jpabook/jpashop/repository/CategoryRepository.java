@@ -0,0 +1,29 @@
+package jpabook.jpashop.repository;
+
+import java.util.List;
+import jpabook.jpashop.domain.Category;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CategoryRepository extends JpaRepository<Category, Long> {
+
+    //재귀 CTE - 시작 카테고리와 모든 하위 카테고리 (깊이 64 까지, 순환 참조 방지)
+    //순환이 있으면 같은 카테고리가 여러 깊이로 반복되므로 읽는 쪽에서 중복을 거른다
+    String SUBTREE = "WITH RECURSIVE TREE(CATEGORY_ID, DEPTH) AS ("
+        + " SELECT CATEGORY_ID, 0 FROM CATEGORY WHERE CATEGORY_ID = :categoryId"
+        + " UNION ALL"
+        + " SELECT C.CATEGORY_ID, T.DEPTH + 1 FROM CATEGORY C JOIN TREE T ON C.PARENT_ID = T.CATEGORY_ID"
+        + " WHERE T.DEPTH < 64)";
+
+    /**
+     * 하위 트리 전체를 쿼리 한 번으로 조회
+     * @return {CATEGORY_ID, PARENT_ID, NAME, DEPTH} (깊이, ID 순, 순환이 있으면 같은 ID 가 다시 나온다)
+     */
+    @Query(value = SUBTREE
+        + " SELECT C.CATEGORY_ID, C.PARENT_ID, C.NAME, T.DEPTH"
+        + " FROM CATEGORY C JOIN TREE T ON C.CATEGORY_ID = T.CATEGORY_ID"
+        + " ORDER BY T.DEPTH, C.CATEGORY_ID",
+        nativeQuery = true)
+    List<Object[]> findSubtreeRows(@Param("categoryId") Long categoryId);
+}
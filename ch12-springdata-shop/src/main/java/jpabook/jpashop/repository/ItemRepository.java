@@ -1,8 +1,33 @@
 package jpabook.jpashop.repository;
 
+import java.util.List;
+import javax.persistence.QueryHint;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.custom.CustomItemRepository;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, Long>, CustomItemRepository {
+
+    @Override
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<Item> findAll();
+
+    List<Item> findByNameContaining(String name);
+
+    /**
+     * 카테고리와 모든 하위 카테고리에 속한 상품 (CATEGORY_ITEM 조인, 쿼리 한 번)
+     */
+    @Query(value = CategoryRepository.SUBTREE
+        + " SELECT I.* FROM ITEM I WHERE I.ITEM_ID IN ("
+        + " SELECT CI.ITEM_ID FROM CATEGORY_ITEM CI JOIN TREE T ON CI.CATEGORY_ID = T.CATEGORY_ID)"
+        + " ORDER BY I.ITEM_ID",
+        nativeQuery = true)
+    List<Item> findInCategorySubtree(@Param("categoryId") Long categoryId);
+
+    @Query("select i.stockQuantity from Item i where i.id = :itemId")
+    Integer findStockQuantityById(@Param("itemId") Long itemId);
 
 }
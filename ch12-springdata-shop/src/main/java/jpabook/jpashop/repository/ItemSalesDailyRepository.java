@@ -0,0 +1,29 @@
+package jpabook.jpashop.repository;
+
+import java.util.Date;
+import java.util.List;
+import jpabook.jpashop.domain.ItemSalesDaily;
+import jpabook.jpashop.domain.ItemSalesDto;
+import jpabook.jpashop.domain.ItemSalesId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ItemSalesDailyRepository extends JpaRepository<ItemSalesDaily, ItemSalesId> {
+
+    /**
+     * 기간 내 상품별 합계 (기간의 일 수 x 상품 수만큼 읽는다)
+     */
+    @Query("select new jpabook.jpashop.domain.ItemSalesDto(d.id.itemId,"
+        + " sum(d.quantity), sum(d.revenue), sum(d.canceledQuantity), sum(d.canceledRevenue))"
+        + " from ItemSalesDaily d where d.id.salesDate >= :from and d.id.salesDate < :to group by d.id.itemId")
+    List<ItemSalesDto> sumByItem(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * 기간 내 일별 합계
+     */
+    @Query("select new jpabook.jpashop.domain.ItemSalesDto(d.id.salesDate,"
+        + " sum(d.quantity), sum(d.revenue), sum(d.canceledQuantity), sum(d.canceledRevenue))"
+        + " from ItemSalesDaily d where d.id.salesDate >= :from and d.id.salesDate < :to group by d.id.salesDate")
+    List<ItemSalesDto> sumByDay(@Param("from") Date from, @Param("to") Date to);
+}
@@ -0,0 +1,44 @@
+package jpabook.jpashop.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import javax.persistence.LockModeType;
+import jpabook.jpashop.domain.ItemSalesDelta;
+import jpabook.jpashop.domain.ItemSalesDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ItemSalesDeltaRepository extends JpaRepository<ItemSalesDelta, Long> {
+
+    /**
+     * 쌓인 순서대로 한 묶음 (압축용, 다른 인스턴스의 압축이 같은 행을 합치지 못하게 쓰기 잠금)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from ItemSalesDelta d order by d.id")
+    List<ItemSalesDelta> findBatch(Pageable pageable);
+
+    @Modifying
+    @Query("delete from ItemSalesDelta d where d.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 아직 압축하지 않은 변화량의 상품별 합계
+     */
+    @Query("select new jpabook.jpashop.domain.ItemSalesDto(d.itemId,"
+        + " sum(d.quantity), sum(d.revenue), sum(d.canceledQuantity), sum(d.canceledRevenue))"
+        + " from ItemSalesDelta d where d.salesDate >= :from and d.salesDate < :to group by d.itemId")
+    List<ItemSalesDto> sumByItem(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * 아직 압축하지 않은 변화량의 일별 합계
+     */
+    @Query("select new jpabook.jpashop.domain.ItemSalesDto(d.salesDate,"
+        + " sum(d.quantity), sum(d.revenue), sum(d.canceledQuantity), sum(d.canceledRevenue))"
+        + " from ItemSalesDelta d where d.salesDate >= :from and d.salesDate < :to group by d.salesDate")
+    List<ItemSalesDto> sumByDay(@Param("from") Date from, @Param("to") Date to);
+}
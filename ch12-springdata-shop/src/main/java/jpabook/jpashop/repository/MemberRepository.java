@@ -1,10 +1,17 @@
 package jpabook.jpashop.repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 import jpabook.jpashop.domain.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
 
     List<Member> findByName(String name);
+
+    boolean existsByName(String name);
+
+    @Query("select m.name from Member m")
+    Stream<String> streamAllNames();
 }
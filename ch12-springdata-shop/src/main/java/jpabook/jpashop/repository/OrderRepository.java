@@ -1,10 +1,22 @@
 package jpabook.jpashop.repository;
 
+import java.util.Date;
+import java.util.List;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderTotalDto;
 import jpabook.jpashop.repository.custom.CustomOrderRepository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order>, CustomOrderRepository {
 
+    /**
+     * 기간 내 상태별 주문 수와 총액 합계 (ORDERS 만 읽는다)
+     * 취소한 주문도 총액을 그대로 가지므로 상태로 묶어야 한다. 취소 금액은 CANCEL 합계에만 들어간다.
+     */
+    @Query("select new jpabook.jpashop.domain.OrderTotalDto(o.status, count(o), sum(o.totalPrice))"
+        + " from Order o where o.orderDate >= :from and o.orderDate < :to group by o.status")
+    List<OrderTotalDto> sumTotalPriceByStatus(@Param("from") Date from, @Param("to") Date to);
 }
@@ -0,0 +1,37 @@
+package jpabook.jpashop.repository;
+
+import java.util.Collection;
+import java.util.List;
+import jpabook.jpashop.domain.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * 발생 순서대로 한 묶음
+     */
+    @Query("select e from OutboxEvent e order by e.id")
+    List<OutboxEvent> findBatch(Pageable pageable);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.attempts = e.attempts + 1 where e.id = :id")
+    int increaseAttempts(@Param("id") Long id);
+
+    /**
+     * 전달을 포기한 이벤트를 OUTBOX_DEAD_LETTER 로 복사 (호출한 쪽에서 지운다)
+     */
+    @Modifying
+    @Query(value = "insert into OUTBOX_DEAD_LETTER"
+        + " (OUTBOX_EVENT_ID, EVENTTYPE, ORDERID, MEMBERID, CREATEDDATE, ATTEMPTS, LASTERROR, PARKEDDATE)"
+        + " select OUTBOX_EVENT_ID, EVENTTYPE, ORDERID, MEMBERID, CREATEDDATE, ATTEMPTS, :lastError, CURRENT_TIMESTAMP"
+        + " from OUTBOX_EVENT where OUTBOX_EVENT_ID = :id", nativeQuery = true)
+    int park(@Param("id") Long id, @Param("lastError") String lastError);
+}
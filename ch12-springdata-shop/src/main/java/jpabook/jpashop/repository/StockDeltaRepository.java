@@ -0,0 +1,38 @@
+package jpabook.jpashop.repository;
+
+import java.util.Collection;
+import java.util.List;
+import jpabook.jpashop.domain.StockDelta;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface StockDeltaRepository extends JpaRepository<StockDelta, Long> {
+
+    /**
+     * 쌓인 순서대로 한 묶음 (ITEM 반영용)
+     */
+    @Query("select d from StockDelta d order by d.id")
+    List<StockDelta> findBatch(Pageable pageable);
+
+    @Modifying
+    @Query("delete from StockDelta d where d.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 다른 샤드의 변화량을 전역 샤드 ITEM 에 반영했다는 기록 (샤드마다 한 줄, 전역 샤드)
+     * 반영과 같은 트랜잭션에 남기고, 그 샤드에서 변화량을 지운 뒤 지운다.
+     */
+    @Modifying
+    @Query(value = "insert into STOCK_FLUSH (SHARD_NO, DELTA_IDS) values (:shard, :deltaIds)", nativeQuery = true)
+    int insertFlush(@Param("shard") int shard, @Param("deltaIds") String deltaIds);
+
+    @Query(value = "select DELTA_IDS from STOCK_FLUSH where SHARD_NO = :shard", nativeQuery = true)
+    String findFlush(@Param("shard") int shard);
+
+    @Modifying
+    @Query(value = "delete from STOCK_FLUSH where SHARD_NO = :shard", nativeQuery = true)
+    int deleteFlush(@Param("shard") int shard);
+}
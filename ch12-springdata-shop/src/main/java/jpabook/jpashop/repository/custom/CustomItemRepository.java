@@ -0,0 +1,16 @@
+package jpabook.jpashop.repository.custom;
+
+public interface CustomItemRepository {
+
+    /**
+     * 조건부 재고 차감 (quantity 가 음수면 재고 복구)
+     * 재고가 부족하면 0 을 반환한다. 버전을 올려서 상품을 수정 중인 트랜잭션이 충돌을 알 수 있게 한다.
+     */
+    public int decreaseStock(Long itemId, int quantity);
+
+    /**
+     * 재고가 부족해도 차감 (0 아래로는 내리지 않는다)
+     * 이미 커밋된 주문의 차감량을 더 미룰 수 없을 때만 쓴다.
+     */
+    public int forceDecreaseStock(Long itemId, int quantity);
+}
@@ -1,11 +1,46 @@
 package jpabook.jpashop.repository.custom;
 
 import java.util.List;
+import java.util.function.Consumer;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderCursor;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderListDto;
 import jpabook.jpashop.domain.OrderSearch;
 
 public interface CustomOrderRepository {
 
     public List<Order> search(OrderSearch orderSearch);
 
+    /**
+     * search 와 같은 조건을 호출마다 QueryDSL 로 만들어 조회 (조건 조합별로 캐시한 JPQL 과 비교하는 벤치마크용)
+     */
+    public List<Order> searchQuerydsl(OrderSearch orderSearch);
+
+    /**
+     * 회원, 배송, 주문상품까지 함께 조회 (조회 쿼리 2번)
+     */
+    public List<Order> searchWithItems(OrderSearch orderSearch);
+
+    /**
+     * 키셋 페이징 - 커서 다음 주문을 최신순(주문시간, 주문 ID 내림차순)으로 size 건 조회
+     */
+    public List<Order> searchAfter(OrderSearch orderSearch, OrderCursor cursor, int size);
+
+    /**
+     * 주문 총액이 큰 순서(총액, 주문 ID 내림차순)로 size 건 조회 (ORDER_ITEM 을 읽지 않는다)
+     */
+    public List<Order> searchByTotalPrice(OrderSearch orderSearch, int size);
+
+    /**
+     * 주문 목록 화면용 DTO 조회 (엔티티를 영속성 컨텍스트에 올리지 않는다)
+     */
+    public List<OrderListDto> searchListDto(OrderSearch orderSearch);
+
+    /**
+     * 검색 조건에 맞는 주문상품을 주문, 회원, 상품과 함께 하나씩 넘긴다.
+     * 전방향 스크롤로 읽고 일정 건수마다 영속성 컨텍스트를 비우므로 건수와 상관없이 메모리 사용량이 일정하다.
+     */
+    public void scrollOrderItems(OrderSearch orderSearch, Consumer<OrderItem> consumer);
+
 }
@@ -0,0 +1,70 @@
+package jpabook.jpashop.repository.custom;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import jpabook.jpashop.domain.item.Item;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 재고 UPDATE (네이티브 SQL)
+ *
+ * HQL 벌크 UPDATE 는 커밋할 때 Item 2차 캐시 영역 전체와 ITEM 을 읽은 쿼리 캐시(findAll)를 비운다. 재고 엔진은 매초
+ * 재고를 반영하므로 상품 캐시가 거의 비어 있게 된다. 여기서는 Hibernate 가 영역을 비우지 않게 ITEM 과 상관없는
+ * 쿼리 공간(STOCK_QUERY_SPACE)만 동기화 대상으로 걸고, 바꾼 상품만 캐시에서 지운다.
+ * 재고 변경은 상품 목록의 구성(쿼리 캐시에 남는 ID 목록)을 바꾸지 않으므로 쿼리 캐시는 그대로 둔다.
+ */
+public class ItemRepositoryImpl implements CustomItemRepository {
+
+    static final String STOCK_QUERY_SPACE = "ITEM_STOCK";
+
+    private static final String DECREASE_STOCK = "update ITEM set STOCKQUANTITY = STOCKQUANTITY - :quantity,"
+        + " VERSION = VERSION + 1 where ITEM_ID = :itemId and STOCKQUANTITY >= :quantity";
+
+    private static final String FORCE_DECREASE_STOCK = "update ITEM set STOCKQUANTITY ="
+        + " case when STOCKQUANTITY > :quantity then STOCKQUANTITY - :quantity else 0 end,"
+        + " VERSION = VERSION + 1 where ITEM_ID = :itemId";
+
+    @PersistenceContext EntityManager em;
+
+    @Override
+    public int decreaseStock(Long itemId, int quantity) {
+        return updateStock(DECREASE_STOCK, itemId, quantity);
+    }
+
+    @Override
+    public int forceDecreaseStock(Long itemId, int quantity) {
+        return updateStock(FORCE_DECREASE_STOCK, itemId, quantity);
+    }
+
+    private int updateStock(String sql, Long itemId, int quantity) {
+
+        int updated = em.createNativeQuery(sql)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(STOCK_QUERY_SPACE)
+            .setParameter("itemId", itemId)
+            .setParameter("quantity", quantity)
+            .executeUpdate();
+        if (updated > 0) {
+            evict(itemId);
+        }
+        return updated;
+    }
+
+    /**
+     * 지금 지우고, 커밋 전에 다른 트랜잭션이 옛 값을 다시 올렸을 수 있으므로 커밋 후에 한 번 더 지운다.
+     */
+    private void evict(final Long itemId) {
+
+        em.getEntityManagerFactory().getCache().evict(Item.class, itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    em.getEntityManagerFactory().getCache().evict(Item.class, itemId);
+                }
+            });
+        }
+    }
+}
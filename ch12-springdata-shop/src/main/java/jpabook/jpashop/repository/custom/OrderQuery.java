@@ -0,0 +1,147 @@
+package jpabook.jpashop.repository.custom;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.persistence.Query;
+import jpabook.jpashop.domain.OrderCursor;
+import jpabook.jpashop.domain.OrderSearch;
+import org.springframework.util.StringUtils;
+
+/**
+ * 주문 검색 JPQL (조건 조합별 캐시)
+ *
+ * JPQL 은 어떤 조건이 있는지(모양)로만 정해지므로 모양마다 한 번만 만들고, 호출마다 파라미터만 바인딩한다.
+ * 같은 JPQL 문자열을 다시 쓰므로 Criteria/QueryDSL 렌더링 없이 Hibernate 쿼리 계획 캐시에 적중한다.
+ * 회원 이름은 이름 색인으로 찾은 회원 ID 가 있으면 IN 조건으로, 없으면 LIKE 로 검색한다.
+ */
+enum OrderQuery {
+
+    SEARCH("select o from Order o",
+        " left join o.member m", ""),
+
+    FETCH_LATEST("select o from Order o left join fetch o.member m left join fetch o.delivery d",
+        "", " order by o.orderDate desc, o.id desc"),
+
+    FETCH_BY_TOTAL_PRICE("select o from Order o left join fetch o.member m left join fetch o.delivery d",
+        "", " order by o.totalPrice desc, o.id desc"),
+
+    LIST_DTO("select new jpabook.jpashop.domain.OrderListDto("
+        + "o.id, m.name, i.name, oi.orderPrice, oi.count, o.status, o.orderDate)"
+        + " from OrderItem oi join oi.order o join o.member m join oi.item i",
+        "", " order by o.orderDate desc, o.id desc, oi.id asc");
+
+    //조건 비트
+    private static final int MEMBER_ID = 1;
+    private static final int MEMBER_NAME = 1 << 1;
+    private static final int STATUS = 1 << 2;
+    private static final int CURSOR = 1 << 3;
+    private static final int MEMBER_IDS = 1 << 4;
+    private static final int SHAPES = 1 << 5;
+
+    private static final char LIKE_ESCAPE = '!';
+
+    private final String select;
+    private final String memberJoin;    //회원 이름 조건이 있을 때만 붙이는 조인
+    private final String orderBy;
+    private final AtomicReferenceArray<String> jpqlByShape = new AtomicReferenceArray<>(SHAPES);
+
+    OrderQuery(String select, String memberJoin, String orderBy) {
+        this.select = select;
+        this.memberJoin = memberJoin;
+        this.orderBy = orderBy;
+    }
+
+    String jpql(OrderSearch orderSearch, OrderCursor cursor) {
+
+        int shape = shapeOf(orderSearch, cursor);
+        String jpql = jpqlByShape.get(shape);
+        if (jpql == null) {
+            jpql = render(shape);
+            jpqlByShape.set(shape, jpql);   //같은 값이므로 경쟁해도 상관없다
+        }
+        return jpql;
+    }
+
+    static void bind(Query query, OrderSearch orderSearch, OrderCursor cursor) {
+
+        int shape = shapeOf(orderSearch, cursor);
+        if ((shape & MEMBER_ID) != 0) {
+            query.setParameter("memberId", orderSearch.getMemberId());
+        }
+        if ((shape & MEMBER_IDS) != 0) {
+            query.setParameter("memberIds", orderSearch.getMemberIds());
+        }
+        if ((shape & MEMBER_NAME) != 0) {
+            query.setParameter("memberName", "%" + escapeLike(orderSearch.getMemberName()) + "%");
+        }
+        if ((shape & STATUS) != 0) {
+            query.setParameter("status", orderSearch.getOrderStatus());
+        }
+        if ((shape & CURSOR) != 0) {
+            query.setParameter("cursorDate", cursor.getOrderDate());
+            query.setParameter("cursorId", cursor.getOrderId());
+        }
+    }
+
+    private String render(int shape) {
+
+        StringBuilder jpql = new StringBuilder(select);
+        if ((shape & MEMBER_NAME) != 0) {
+            jpql.append(memberJoin);
+        }
+
+        String and = " where ";
+        if ((shape & MEMBER_ID) != 0) {
+            jpql.append(and).append("o.member.id = :memberId");
+            and = " and ";
+        }
+        if ((shape & MEMBER_IDS) != 0) {
+            jpql.append(and).append("o.member.id in :memberIds");
+            and = " and ";
+        }
+        if ((shape & MEMBER_NAME) != 0) {
+            jpql.append(and).append("m.name like :memberName escape '").append(LIKE_ESCAPE).append("'");
+            and = " and ";
+        }
+        if ((shape & STATUS) != 0) {
+            jpql.append(and).append("o.status = :status");
+            and = " and ";
+        }
+        if ((shape & CURSOR) != 0) {
+            jpql.append(and)
+                .append("(o.orderDate < :cursorDate or (o.orderDate = :cursorDate and o.id < :cursorId))");
+        }
+        return jpql.append(orderBy).toString();
+    }
+
+    private static int shapeOf(OrderSearch orderSearch, OrderCursor cursor) {
+
+        int shape = 0;
+        if (orderSearch.getMemberId() != null) {
+            shape |= MEMBER_ID;
+        }
+        if (orderSearch.getMemberIds() != null) {
+            shape |= MEMBER_IDS;
+        } else if (StringUtils.hasText(orderSearch.getMemberName())) {
+            shape |= MEMBER_NAME;
+        }
+        if (orderSearch.getOrderStatus() != null) {
+            shape |= STATUS;
+        }
+        if (cursor != null && !cursor.isFirst()) {
+            shape |= CURSOR;
+        }
+        return shape;
+    }
+
+    private static String escapeLike(String value) {
+
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
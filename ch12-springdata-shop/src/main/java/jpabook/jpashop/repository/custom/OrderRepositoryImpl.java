@@ -1,30 +1,73 @@
 package jpabook.jpashop.repository.custom;
 
 import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.impl.JPAQuery;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderCursor;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderListDto;
 import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.QMember;
 import jpabook.jpashop.domain.QOrder;
+import jpabook.jpashop.domain.QOrderItem;
+import jpabook.jpashop.domain.item.QItem;
+import jpabook.jpashop.search.NameIndex;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.util.StringUtils;
 
 public class OrderRepositoryImpl extends QuerydslRepositorySupport implements
     CustomOrderRepository {
 
+    //스크롤 조회 시 JDBC fetch size 이자 영속성 컨텍스트를 비우는 단위
+    private static final int SCROLL_FETCH_SIZE = 500;
+
+    private static final int NO_LIMIT = -1;
+
+    //주문상품을 초기화할 때 IN 절 하나에 넣는 주문 수
+    static final int FETCH_ITEMS_CHUNK_SIZE = 500;
+
+    private static final String FETCH_ORDER_ITEMS = "select distinct o from Order o"
+        + " left join fetch o.orderItems oi left join fetch oi.item i where o in :orders";
+
+    @Autowired(required = false) NameIndex nameIndex;
+
     public OrderRepositoryImpl() {
         super(Order.class);
     }
 
     @Override
     public List<Order> search(OrderSearch orderSearch) {
+        return list(OrderQuery.SEARCH, Order.class, orderSearch, null, NO_LIMIT);
+    }
+
+    @Override
+    public List<Order> searchQuerydsl(OrderSearch orderSearch) {
+
+        orderSearch = resolveMemberName(orderSearch);
+        if (orderSearch.getMemberIds() != null && orderSearch.getMemberIds().isEmpty()) {
+            return new ArrayList<>();
+        }
 
         QOrder order = QOrder.order;
         QMember member = QMember.member;
 
         JPQLQuery<Order> query = from(order);
 
-        if (StringUtils.hasText(orderSearch.getMemberName())) {
+        if (orderSearch.getMemberId() != null) {
+            query.where(order.member.id.eq(orderSearch.getMemberId()));
+        }
+
+        if (orderSearch.getMemberIds() != null) {
+            query.where(order.member.id.in(orderSearch.getMemberIds()));
+        } else if (StringUtils.hasText(orderSearch.getMemberName())) {
             query.leftJoin(order.member, member)
                 .where(member.name.contains(orderSearch.getMemberName()));
         }
@@ -35,4 +78,135 @@ public class OrderRepositoryImpl extends QuerydslRepositorySupport implements
 
         return query.fetch();
     }
+
+    @Override
+    public List<Order> searchWithItems(OrderSearch orderSearch) {
+
+        //1. 주문 + 회원 + 배송 (~ToOne 페치 조인), 샤드별 결과를 병합할 수 있도록 최신순 정렬
+        List<Order> orders = list(OrderQuery.FETCH_LATEST, Order.class, orderSearch, null, NO_LIMIT);
+
+        //2. 주문상품 + 상품
+        fetchOrderItems(orders);
+        return orders;
+    }
+
+    @Override
+    public List<Order> searchAfter(OrderSearch orderSearch, OrderCursor cursor, int size) {
+
+        //IDX_ORDERS_ORDER_DATE_ID 인덱스 순서로 읽고 size 건에서 멈춘다 (count 쿼리 없음)
+        List<Order> orders = list(OrderQuery.FETCH_LATEST, Order.class, orderSearch, cursor, size);
+
+        fetchOrderItems(orders);
+        return orders;
+    }
+
+    @Override
+    public List<Order> searchByTotalPrice(OrderSearch orderSearch, int size) {
+        return list(OrderQuery.FETCH_BY_TOTAL_PRICE, Order.class, orderSearch, null, size);
+    }
+
+    @Override
+    public List<OrderListDto> searchListDto(OrderSearch orderSearch) {
+        return list(OrderQuery.LIST_DTO, OrderListDto.class, orderSearch, null, NO_LIMIT);
+    }
+
+    @Override
+    public void scrollOrderItems(OrderSearch orderSearch, Consumer<OrderItem> consumer) {
+
+        orderSearch = resolveMemberName(orderSearch);
+        if (orderSearch.getMemberIds() != null && orderSearch.getMemberIds().isEmpty()) {
+            return;
+        }
+
+        QOrderItem orderItem = QOrderItem.orderItem;
+        QOrder order = QOrder.order;
+        QMember member = QMember.member;
+        QItem item = QItem.item;
+
+        //스크롤은 JPA Query 가 필요하다 (from() 은 JPAQuery 를 만든다)
+        JPAQuery<OrderItem> query = (JPAQuery<OrderItem>) from(orderItem)
+            .join(orderItem.order, order).fetchJoin()
+            .join(order.member, member).fetchJoin()
+            .join(orderItem.item, item).fetchJoin();
+
+        if (orderSearch.getMemberId() != null) {
+            query.where(order.member.id.eq(orderSearch.getMemberId()));
+        }
+
+        if (orderSearch.getMemberIds() != null) {
+            query.where(order.member.id.in(orderSearch.getMemberIds()));
+        } else if (StringUtils.hasText(orderSearch.getMemberName())) {
+            query.where(member.name.contains(orderSearch.getMemberName()));
+        }
+
+        if (orderSearch.getOrderStatus() != null) {
+            query.where(order.status.eq(orderSearch.getOrderStatus()));
+        }
+
+        EntityManager entityManager = getEntityManager();
+        ScrollableResults results = query.orderBy(order.id.asc(), orderItem.id.asc())
+            .createQuery()
+            .unwrap(org.hibernate.query.Query.class)
+            .setFetchSize(SCROLL_FETCH_SIZE)
+            .setReadOnly(true)
+            .scroll(ScrollMode.FORWARD_ONLY);
+
+        try {
+            int count = 0;
+            while (results.next()) {
+                consumer.accept((OrderItem) results.get(0));
+                if (++count % SCROLL_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * 조건 조합별로 캐시한 JPQL 에 파라미터만 바인딩해서 조회
+     */
+    private <T> List<T> list(OrderQuery orderQuery, Class<T> resultClass, OrderSearch orderSearch,
+        OrderCursor cursor, int maxResults) {
+
+        OrderSearch resolved = resolveMemberName(orderSearch);
+        if (resolved.getMemberIds() != null && resolved.getMemberIds().isEmpty()) {
+            return new ArrayList<>();   //이름이 맞는 회원 없음
+        }
+
+        TypedQuery<T> query = getEntityManager().createQuery(orderQuery.jpql(resolved, cursor), resultClass);
+        OrderQuery.bind(query, resolved, cursor);
+        if (maxResults != NO_LIMIT) {
+            query.setMaxResults(maxResults);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * 회원 이름을 이름 색인으로 회원 ID 목록으로 바꾼다 (색인이 없거나, 답할 수 없거나, 맞는 회원이 없으면 그대로)
+     */
+    private OrderSearch resolveMemberName(OrderSearch orderSearch) {
+
+        if (nameIndex == null || orderSearch.getMemberIds() != null
+            || !StringUtils.hasText(orderSearch.getMemberName())) {
+            return orderSearch;
+        }
+
+        List<Long> memberIds = nameIndex.findIds(NameIndex.MEMBER, orderSearch.getMemberName());
+        //맞는 회원이 없으면 색인이 아직 반영하지 못한 회원일 수 있으므로 LIKE 로 한 번 더 찾는다
+        return memberIds == null || memberIds.isEmpty() ? orderSearch : orderSearch.withMemberIds(memberIds);
+    }
+
+    /**
+     * 주문상품 + 상품 (IN 절로 컬렉션 초기화, 주문 FETCH_ITEMS_CHUNK_SIZE 건마다 쿼리 한 번)
+     */
+    private void fetchOrderItems(List<Order> orders) {
+
+        for (int from = 0; from < orders.size(); from += FETCH_ITEMS_CHUNK_SIZE) {
+            getEntityManager().createQuery(FETCH_ORDER_ITEMS, Order.class)
+                .setParameter("orders", orders.subList(from, Math.min(from + FETCH_ITEMS_CHUNK_SIZE, orders.size())))
+                .getResultList();
+        }
+    }
 }
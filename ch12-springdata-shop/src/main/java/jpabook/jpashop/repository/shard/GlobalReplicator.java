@@ -0,0 +1,167 @@
+package jpabook.jpashop.repository.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jpabook.jpashop.config.ShardRoutingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 전역 테이블 복제 (전역 샤드 -> 주문 샤드)
+ *
+ * 주문 샤드의 ORDERS / ORDER_ITEM 은 MEMBER / ITEM 을 FK 와 조인으로 참조하므로 그 행의 복사본이 있어야 한다.
+ * 주문 트랜잭션은 FK 를 걸기 전에 ensureLocal 로 없는 행을 복사하고, 전역 샤드에서 상품을 바꾸면 커밋 후
+ * replicateAfterCommit 으로 모든 샤드의 복사본을 덮어쓴다. 복사는 별도 커넥션에서 MERGE 로 하므로 멱등이다.
+ * 재고(STOCKQUANTITY)는 StockReservationEngine 이 전역 샤드에서만 읽으므로 복사본의 값은 쓰지 않는다.
+ * 샤딩을 끄면(ShardRoutingDataSource 빈 없음) 아무 일도 하지 않는다.
+ */
+@Component
+public class GlobalReplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(GlobalReplicator.class);
+
+    public enum Table {
+
+        MEMBER("MEMBER", "MEMBER_ID"),
+        ITEM("ITEM", "ITEM_ID");
+
+        private final String tableName;
+        private final String idColumn;
+
+        Table(String tableName, String idColumn) {
+            this.tableName = tableName;
+            this.idColumn = idColumn;
+        }
+    }
+
+    @Autowired(required = false) ShardRoutingDataSource shardRoutingDataSource;
+
+    //샤드별로 복사해 둔 행 ("테이블:ID")
+    private final ConcurrentMap<Integer, Set<String>> copied = new ConcurrentHashMap<>();
+
+    /**
+     * 현재 샤드(ShardContext)에 아직 복사하지 않은 전역 행을 복사
+     */
+    public void ensureLocal(Table table, Collection<Long> ids) {
+
+        Integer shard = ShardContext.current();
+        if (shardRoutingDataSource == null || shard == null || shard == OrderShards.GLOBAL_SHARD) {
+            return;
+        }
+
+        Set<String> copiedOfShard = copiedOf(shard);
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            if (!copiedOfShard.contains(key(table, id))) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            copy(table, missing, shard);
+        }
+    }
+
+    public void ensureLocal(Table table, Long id) {
+        ensureLocal(table, Collections.singletonList(id));
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋되면 모든 샤드의 복사본을 전역 샤드 값으로 덮어쓴다 (트랜잭션 밖이면 바로)
+     */
+    public void replicateAfterCommit(final Table table, final Collection<Long> ids) {
+
+        if (shardRoutingDataSource == null) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            replicate(table, ids);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                replicate(table, ids);
+            }
+        });
+    }
+
+    private void replicate(Table table, Collection<Long> ids) {
+
+        for (int shard = 0; shard < shardRoutingDataSource.getShardCount(); shard++) {
+            if (shard == OrderShards.GLOBAL_SHARD) {
+                continue;
+            }
+            try {
+                copy(table, ids, shard);
+            } catch (DataAccessException e) {
+                //복사하지 못한 행은 다음 주문에서 ensureLocal 이 다시 복사한다
+                Set<String> copiedOfShard = copiedOf(shard);
+                for (Long id : ids) {
+                    copiedOfShard.remove(key(table, id));
+                }
+                log.warn("전역 행 복제 실패 table={}, shard={}, ids={}", table, shard, ids, e);
+            }
+        }
+    }
+
+    /**
+     * 전역 샤드에서 읽어 대상 샤드에 MERGE
+     * 샤드마다 읽기와 쓰기를 한 번에 하나씩만 해서, 먼저 읽은 오래된 값이 나중에 읽은 값을 덮어쓰지 않게 한다.
+     */
+    private void copy(Table table, Collection<Long> ids, int shard) {
+
+        Set<String> copiedOfShard = copiedOf(shard);
+        synchronized (copiedOfShard) {
+
+            List<Map<String, Object>> rows = new NamedParameterJdbcTemplate(
+                shardRoutingDataSource.getShard(OrderShards.GLOBAL_SHARD))
+                .queryForList("select * from " + table.tableName + " where " + table.idColumn + " in (:ids)",
+                    Collections.singletonMap("ids", ids));
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            List<String> columns = new ArrayList<>(rows.get(0).keySet());
+            StringBuilder sql = new StringBuilder("merge into ").append(table.tableName)
+                .append(" (").append(String.join(", ", columns)).append(") key (").append(table.idColumn)
+                .append(") values (");
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+
+            List<Object[]> values = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                values.add(row.values().toArray());
+            }
+            new JdbcTemplate(shardRoutingDataSource.getShard(shard)).batchUpdate(sql.toString(), values);
+
+            for (Map<String, Object> row : rows) {
+                copiedOfShard.add(key(table, row.get(table.idColumn)));
+            }
+        }
+    }
+
+    private Set<String> copiedOf(int shard) {
+        return copied.computeIfAbsent(shard, key -> ConcurrentHashMap.newKeySet());
+    }
+
+    private static String key(Table table, Object id) {
+        return table.name() + ":" + id;
+    }
+}
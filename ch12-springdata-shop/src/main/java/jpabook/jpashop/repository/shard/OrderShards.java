@@ -0,0 +1,216 @@
+package jpabook.jpashop.repository.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import jpabook.jpashop.config.ShardRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 주문 샤드 (회원 ID 해시로 ORDERS / ORDER_ITEM / DELIVERY 를 나눈다)
+ *
+ * 0 번 샤드는 전역 샤드로 MEMBER / ITEM / CATEGORY 원본을 가진다. 다른 샤드에는 주문이 참조하는 MEMBER / ITEM 행만
+ * GlobalReplicator 가 복사한다.
+ * 샤드마다 주문 시퀀스 구간이 달라서(SHARD_ID_BITS) 주문 ID 만으로 샤드를 찾을 수 있다. 식별자 할당 구간도 샤드별로
+ * 따로 둔다(ShardSequenceGenerator).
+ * 샤딩을 끄면(ShardRoutingDataSource 빈 없음) 모든 메소드가 현재 트랜잭션에서 그대로 실행된다.
+ */
+@Component
+public class OrderShards {
+
+    public static final int GLOBAL_SHARD = 0;
+
+    //샤드 i 의 ORDERS_SEQ / ORDER_ITEM_SEQ / DELIVERY_SEQ 는 (i << SHARD_ID_BITS) + 1 부터 시작한다
+    public static final int SHARD_ID_BITS = 40;
+
+    @Autowired(required = false) ShardRoutingDataSource shardRoutingDataSource;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    private ExecutorService scatterExecutor;
+
+    public boolean isEnabled() {
+        return shardRoutingDataSource != null;
+    }
+
+    public int getShardCount() {
+        return isEnabled() ? shardRoutingDataSource.getShardCount() : 1;
+    }
+
+    public int shardOfMember(Long memberId) {
+        //연속된 ID 가 고르게 퍼지도록 섞는다 (샤드 수를 바꾸면 재분배가 필요하다)
+        return Math.floorMod(Long.hashCode(memberId * 0x9E3779B97F4A7C15L), getShardCount());
+    }
+
+    public int shardOfOrder(Long orderId) {
+
+        int shard = (int) (orderId >>> SHARD_ID_BITS);
+        if (shard >= getShardCount()) {
+            throw new IllegalArgumentException("샤드를 찾을 수 없는 주문입니다. orderId=" + orderId);
+        }
+        return shard;
+    }
+
+    /**
+     * 샤드별로 묶기 (입력 순서 유지)
+     */
+    public <T> Map<Integer, List<T>> groupByMember(List<T> values, Function<T, Long> memberId) {
+
+        Map<Integer, List<T>> groups = new LinkedHashMap<>();
+        for (T value : values) {
+            groups.computeIfAbsent(shardOfMember(memberId.apply(value)), shard -> new ArrayList<>())
+                .add(value);
+        }
+        return groups;
+    }
+
+    /**
+     * 지정한 샤드의 새 트랜잭션에서 실행
+     */
+    public <T> T inShard(int shard, Supplier<T> work) {
+
+        if (!isEnabled()) {
+            return work.get();
+        }
+
+        Integer previous = ShardContext.set(shard);
+        try {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            return template.execute(status -> work.get());
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * 모든 샤드에서 읽기 전용 트랜잭션으로 동시에 실행하고 결과를 샤드 순서대로 돌려준다.
+     */
+    public <T> List<T> scatter(Supplier<T> query) {
+
+        if (!isEnabled()) {
+            return Collections.singletonList(query.get());
+        }
+
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < getShardCount(); i++) {
+            final int shard = i;
+            futures.add(executor().submit(() -> readOnlyInShard(shard, query)));
+        }
+
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("샤드 조회가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("샤드 조회에 실패했습니다.", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * 모든 샤드에서 조회한 정렬된 목록을 k-way 병합 (limit 건에서 멈춘다)
+     * 각 샤드의 목록은 comparator 순서로 정렬되어 있어야 한다.
+     */
+    public <T> List<T> scatterSorted(Supplier<List<T>> query, Comparator<? super T> comparator, int limit) {
+        return merge(scatter(query), comparator, limit);
+    }
+
+    static <T> List<T> merge(List<List<T>> sortedLists, Comparator<? super T> comparator, int limit) {
+
+        if (sortedLists.size() == 1) {
+            List<T> only = sortedLists.get(0);
+            return only.size() <= limit ? only : new ArrayList<>(only.subList(0, limit));
+        }
+
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(sortedLists.size(),
+            (a, b) -> comparator.compare(a.value(), b.value()));
+        for (List<T> sortedList : sortedLists) {
+            if (!sortedList.isEmpty()) {
+                heads.add(new Head<>(sortedList));
+            }
+        }
+
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Head<T> head = heads.poll();
+            merged.add(head.value());
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private <T> T readOnlyInShard(int shard, Supplier<T> query) {
+
+        ShardContext.set(shard);
+        try {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setReadOnly(true);
+            return template.execute(status -> query.get());
+        } finally {
+            ShardContext.clear();
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+
+        if (scatterExecutor == null) {
+            scatterExecutor = Executors.newFixedThreadPool(getShardCount(), runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scatterExecutor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+    }
+
+    private static class Head<T> {
+
+        private final List<T> list;
+        private int index;
+
+        Head(List<T> list) {
+            this.list = list;
+        }
+
+        T value() {
+            return list.get(index);
+        }
+
+        boolean advance() {
+            return ++index < list.size();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package jpabook.jpashop.repository.shard;
+
+/**
+ * 현재 스레드가 사용할 샤드 번호
+ * 트랜잭션이 커넥션을 얻기 전에 정해져 있어야 한다.
+ */
+public class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return 이전 샤드 번호 (복구용)
+     */
+    public static Integer set(Integer shard) {
+
+        Integer previous = CURRENT.get();
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+        return previous;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
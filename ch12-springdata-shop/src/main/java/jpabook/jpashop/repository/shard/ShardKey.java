@@ -0,0 +1,21 @@
+package jpabook.jpashop.repository.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 샤드를 정하는 파라미터 (회원 ID 또는 주문 ID)
+ * 메소드의 트랜잭션은 이 값으로 정한 샤드에서 실행된다.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+
+    Type value() default Type.MEMBER_ID;
+
+    enum Type {
+        MEMBER_ID, ORDER_ID
+    }
+}
@@ -0,0 +1,56 @@
+package jpabook.jpashop.repository.shard;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * @ShardKey 파라미터로 샤드를 정한다.
+ * 트랜잭션 인터셉터보다 먼저 실행되어야 트랜잭션이 그 샤드의 커넥션을 얻는다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "jpashop.shard.enabled", havingValue = "true")
+public class ShardKeyAspect {
+
+    @Autowired OrderShards orderShards;
+
+    @Around("execution(* jpabook.jpashop.service..*(.., @jpabook.jpashop.repository.shard.ShardKey (*), ..))")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+
+        Integer previous = ShardContext.set(shardOf(joinPoint));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    private int shardOf(ProceedingJoinPoint joinPoint) {
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        Object[] args = joinPoint.getArgs();
+
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    Long key = (Long) args[i];
+                    return ((ShardKey) annotation).value() == ShardKey.Type.ORDER_ID
+                        ? orderShards.shardOfOrder(key)
+                        : orderShards.shardOfMember(key);
+                }
+            }
+        }
+        throw new IllegalStateException("@ShardKey 파라미터가 없습니다. method=" + method);
+    }
+}
@@ -0,0 +1,132 @@
+package jpabook.jpashop.repository.shard;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.naming.Identifier;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.boot.model.relational.ExportableProducer;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * 샤드별 시퀀스 식별자 생성기
+ *
+ * 주문/주문상품/배송처럼 주문 샤드에 저장하는 엔티티와, 주문 트랜잭션에서 같이 저장하는 엔티티(아웃박스, 재고/판매 변화량)는
+ * @GenericGenerator 로 이 생성기를 쓴다.
+ * Hibernate 의 pooled-lo 최적화기는 SessionFactory 하나에 구간 하나라서, 샤드 A 의 시퀀스에서 받은 구간을
+ * 샤드 B 에 저장하는 엔티티에 쓰게 된다. 여기서는 현재 샤드(ShardContext)마다 구간을 따로 두어
+ * 샤드 i 의 엔티티는 항상 샤드 i 시퀀스 구간의 ID 를 받는다 (OrderShards.shardOfOrder).
+ * 샤딩을 끄면 전역 샤드 구간 하나만 쓴다. 시퀀스는 schema.sql 에서 만든다 (hbm2ddl 을 쓰는 벤치마크/테스트는 hbm2ddl 이 만든다).
+ *
+ * 최적화기는 SequenceStyleGenerator 와 같이 optimizer 파라미터, 없으면 hibernate.id.optimizer.pooled.preferred 설정을 따른다.
+ * pooled-lo: 시퀀스에서 받은 값 lo 로 [lo, lo + increment_size) 구간을 메모리에서 할당한다.
+ * none: 저장할 때마다 시퀀스를 조회한다 (시퀀스가 increment_size 씩 증가하므로 값 사이가 빈다).
+ */
+public class ShardSequenceGenerator implements IdentifierGenerator, Configurable, ExportableProducer {
+
+    public static final String SEQUENCE_NAME = "sequence_name";
+    public static final String INCREMENT_SIZE = "increment_size";
+    public static final String OPTIMIZER = "optimizer";
+
+    private String sequenceName;
+    private String sql;
+    private int incrementSize;
+    private int blockSize;  //시퀀스 값 하나로 할당하는 ID 수
+
+    private final ConcurrentMap<Integer, Block> blocks = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+
+        this.sequenceName = ConfigurationHelper.getString(SEQUENCE_NAME, params);
+        if (sequenceName == null) {
+            throw new MappingException(SEQUENCE_NAME + " 파라미터가 없습니다.");
+        }
+        this.incrementSize = ConfigurationHelper.getInt(INCREMENT_SIZE, params, 1);
+
+        String optimizer = ConfigurationHelper.getString(OPTIMIZER, params,
+            OptimizerFactory.determineImplicitOptimizerName(incrementSize, params));
+        if (StandardOptimizerDescriptor.NONE.getExternalName().equals(optimizer)) {
+            this.blockSize = 1;
+        } else if (StandardOptimizerDescriptor.POOLED_LO.getExternalName().equals(optimizer)) {
+            this.blockSize = incrementSize;
+        } else {
+            throw new MappingException(sequenceName + " 의 최적화기 " + optimizer + " 는 지원하지 않습니다. (none, pooled-lo)");
+        }
+        this.sql = serviceRegistry.getService(JdbcEnvironment.class).getDialect()
+            .getSequenceNextValString(sequenceName);
+    }
+
+    /**
+     * hbm2ddl 용 시퀀스 등록 (schema.sql 과 같은 START WITH 1, INCREMENT BY increment_size)
+     */
+    @Override
+    public void registerExportables(Database database) {
+
+        Namespace namespace = database.getDefaultNamespace();
+        Identifier name = Identifier.toIdentifier(sequenceName);
+        if (namespace.locateSequence(name) == null) {
+            namespace.createSequence(name, 1, incrementSize);
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+
+        Integer shard = ShardContext.current();
+        Block block = blocks.computeIfAbsent(shard == null ? OrderShards.GLOBAL_SHARD : shard, key -> new Block());
+
+        synchronized (block) {
+            if (block.next == block.limit) {
+                //구간을 다 썼으면 현재 샤드의 시퀀스에서 새 구간 (세션의 커넥션이 현재 샤드 커넥션이다)
+                long lo = nextValue(session);
+                block.next = lo;
+                block.limit = lo + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    private long nextValue(SharedSessionContractImplementor session) {
+
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(sql);
+        try {
+            ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement);
+            try {
+                resultSet.next();
+                return resultSet.getLong(1);
+            } finally {
+                jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(resultSet, statement);
+            }
+        } catch (SQLException e) {
+            throw session.getFactory().getJdbcServices().getSqlExceptionHelper()
+                .convert(e, "시퀀스 값을 가져올 수 없습니다.", sql);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+
+    private static class Block {
+
+        private long next;  //다음에 할당할 ID
+        private long limit; //구간 끝 (포함하지 않는다)
+    }
+}
@@ -0,0 +1,33 @@
+package jpabook.jpashop.retry;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @RetryOnConflict 메소드를 트랜잭션 바깥에서 감싸서 충돌 시 새 트랜잭션으로 다시 실행한다.
+ * 샤드 선택(ShardKeyAspect) 다음, 트랜잭션 인터셉터 전에 실행된다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConflictRetryAspect {
+
+    @Autowired ConflictRetryExecutor conflictRetryExecutor;
+
+    @Around("@annotation(jpabook.jpashop.retry.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+
+        //바깥 트랜잭션의 영속성 컨텍스트는 이미 오래된 상태라 다시 실행해도 소용없다
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        return conflictRetryExecutor.execute(joinPoint.getSignature().toShortString(),
+            (ConflictRetryExecutor.Attempt<Object>) joinPoint::proceed);
+    }
+}
@@ -0,0 +1,95 @@
+package jpabook.jpashop.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import javax.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * 낙관적 락 충돌 재시도
+ *
+ * 충돌하면 지수 백오프(상한 maxBackoffMillis)에 전체 지터를 더해 기다린 뒤 다시 실행하고,
+ * maxAttempts 번 모두 충돌하면 마지막 예외를 던진다. 작업은 매번 새 트랜잭션에서 실행되어야 한다.
+ * 충돌이 아닌 예외(이미 취소된 주문 등 다시 읽은 상태로 판단한 실패)는 바로 던진다.
+ *
+ * 메트릭: jpashop.retry.conflicts (충돌), jpashop.retry.retries (재시도), jpashop.retry.exhausted (포기)
+ */
+@Component
+public class ConflictRetryExecutor {
+
+    @Value("${jpashop.retry.max-attempts:5}") int maxAttempts;
+    @Value("${jpashop.retry.initial-backoff-millis:10}") long initialBackoffMillis;
+    @Value("${jpashop.retry.max-backoff-millis:200}") long maxBackoffMillis;
+
+    @Autowired MeterRegistry meterRegistry;
+
+    /**
+     * 다시 실행할 작업
+     */
+    public interface Attempt<T> {
+        T run() throws Throwable;
+    }
+
+    public <T> T execute(String name, Supplier<T> work) {
+        try {
+            return execute(name, (Attempt<T>) work::get);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e); //Supplier 는 검사 예외를 던지지 않는다
+        }
+    }
+
+    public <T> T execute(String name, Attempt<T> work) throws Throwable {
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.run();
+            } catch (Throwable e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                meterRegistry.counter("jpashop.retry.conflicts", "method", name).increment();
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("jpashop.retry.exhausted", "method", name).increment();
+                    throw e;
+                }
+                meterRegistry.counter("jpashop.retry.retries", "method", name).increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    static boolean isConflict(Throwable e) {
+
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException
+                || cause instanceof OptimisticLockingFailureException
+                || cause instanceof StaleStateException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void backoff(int attempt) {
+
+        //전체 지터: 0 ~ min(상한, 초기값 * 2^(attempt-1))
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long sleepMillis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 중단되었습니다.", e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package jpabook.jpashop.retry;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 낙관적 락 충돌이면 트랜잭션을 처음부터 다시 실행한다 (ConflictRetryExecutor)
+ * 바깥 트랜잭션 안에서 호출되면 다시 실행하지 않고 충돌을 그대로 던진다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,339 @@
+package jpabook.jpashop.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.ko.KoreanAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 회원/상품 이름 색인 (Lucene)
+ *
+ * 이름을 1~2-gram 과 한국어 형태소(nori)로 색인해서 LIKE '%이름%' 전체 스캔 대신 ID 목록을 찾는다.
+ * n-gram 으로 찾은 후보는 원래 이름에 검색어가 들어 있는지 다시 확인하므로 LIKE 와 결과가 같고,
+ * 형태소로 찾은 결과가 더해진다. 엔티티 변경은 NameIndexListener 가 커밋 후에 반영한다.
+ *
+ * 색인 변경은 1초마다 디스크에 커밋하므로 서버가 죽으면 마지막 변경을 잃는다. 정상 종료할 때만 커밋 데이터에
+ * 표시(clean)를 남기고, 시작할 때 표시가 없거나 종류별 문서 수 / 최대 ID 가 DB 와 다르면 색인을 다시 만든다.
+ */
+@Component
+@ConditionalOnProperty(name = "jpashop.search.enabled", havingValue = "true", matchIfMissing = true)
+public class NameIndex {
+
+    public static final String MEMBER = "MEMBER";
+    public static final String ITEM = "ITEM";
+
+    //이보다 많이 맞으면 IN 절이 너무 커지므로 null 을 돌려서 LIKE 로 검색하게 한다
+    private static final int MAX_MATCHES = 1000;
+
+    private static final String KEY = "key";
+    private static final String TYPE = "type";
+    private static final String ID = "id";
+    private static final String RAW_NAME = "raw";
+    private static final String NGRAM = "ngram";
+    private static final String KOREAN = "ko";
+
+    //커밋 데이터 - 정상 종료했으면 "true"
+    private static final String CLEAN_SHUTDOWN = "clean";
+
+    private static final Logger log = LoggerFactory.getLogger(NameIndex.class);
+
+    @Value("${jpashop.search.index-dir:}") String indexDir; //비어 있으면 메모리 색인
+
+    @PersistenceContext EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    private final Analyzer ngramAnalyzer = ngramAnalyzer(1, 2);        //색인: 글자 하나, 두 글자
+    private final Analyzer ngramQueryAnalyzer = ngramAnalyzer(2, 2);   //검색: 두 글자
+    private final Analyzer koreanAnalyzer = new KoreanAnalyzer();
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private boolean cleanShutdown;  //지난 실행이 색인을 모두 커밋하고 닫았는지
+
+    @PostConstruct
+    public void open() throws IOException {
+
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put(NGRAM, ngramAnalyzer);
+        analyzers.put(KOREAN, koreanAnalyzer);
+
+        directory = indexDir.isEmpty() ? new ByteBuffersDirectory() : FSDirectory.open(Paths.get(indexDir));
+        cleanShutdown = DirectoryReader.indexExists(directory)
+            && "true".equals(SegmentInfos.readLatestCommit(directory).getUserData().get(CLEAN_SHUTDOWN));
+        writer = new IndexWriter(directory,
+            new IndexWriterConfig(new PerFieldAnalyzerWrapper(new KeywordAnalyzer(), analyzers)));
+        //실행 중의 커밋은 정상 종료 표시를 지운다
+        writer.setLiveCommitData(Collections.singletonMap(CLEAN_SHUTDOWN, "false").entrySet());
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * 지난 실행이 비정상 종료했거나 색인이 DB 와 맞지 않으면(문서 수, 최대 ID) DB 에서 다시 만든다.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void verifyOrRebuild() {
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        if (cleanShutdown) {
+            boolean matches = transactionTemplate.execute(status ->
+                matches(MEMBER, em.createQuery("select count(m), max(m.id) from Member m", Object[].class)
+                    .getSingleResult())
+                    && matches(ITEM, em.createQuery("select count(i), max(i.id) from Item i", Object[].class)
+                    .getSingleResult()));
+            if (matches) {
+                return;
+            }
+        }
+
+        log.info("이름 색인을 다시 만듭니다. cleanShutdown={}", cleanShutdown);
+        try {
+            writer.deleteAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        transactionTemplate.execute(status -> {
+            em.createQuery("select m.id, m.name from Member m", Object[].class)
+                .getResultStream()
+                .forEach(row -> index(MEMBER, (Long) row[0], (String) row[1]));
+            em.createQuery("select i.id, i.name from Item i", Object[].class)
+                .getResultStream()
+                .forEach(row -> index(ITEM, (Long) row[0], (String) row[1]));
+            return null;
+        });
+        commit();
+        cleanShutdown = true;
+    }
+
+    /**
+     * 색인의 종류별 문서 수와 최대 ID 가 DB 의 {count, max(id)} 와 같은지
+     * 이름이 null 인 행은 색인하지 않으므로 문서 수가 적으면 다시 만든다 (이름은 필수라 보통 없다).
+     */
+    private boolean matches(String type, Object[] countAndMaxId) {
+
+        long count = ((Number) countAndMaxId[0]).longValue();
+        long maxId = countAndMaxId[1] == null ? 0 : ((Number) countAndMaxId[1]).longValue();
+
+        TermQuery typeQuery = new TermQuery(new Term(TYPE, type));
+        try {
+            searcherManager.maybeRefreshBlocking();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                if (searcher.count(typeQuery) != count) {
+                    return false;
+                }
+                if (count == 0) {
+                    return true;
+                }
+                TopDocs last = searcher.search(typeQuery, 1, new Sort(new SortField(ID, SortField.Type.LONG, true)));
+                return last.scoreDocs.length == 1
+                    && searcher.doc(last.scoreDocs[0].doc).getField(ID).numericValue().longValue() == maxId;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void index(String type, Long id, String name) {
+
+        if (name == null) {
+            remove(type, id);
+            return;
+        }
+
+        Document document = new Document();
+        document.add(new StringField(KEY, type + ":" + id, Field.Store.NO));
+        document.add(new StringField(TYPE, type, Field.Store.NO));
+        document.add(new StoredField(ID, id));
+        document.add(new NumericDocValuesField(ID, id));   //최대 ID 확인용 정렬
+        document.add(new StoredField(RAW_NAME, name));
+        document.add(new TextField(NGRAM, name, Field.Store.NO));
+        document.add(new TextField(KOREAN, name, Field.Store.NO));
+
+        try {
+            writer.updateDocument(new Term(KEY, type + ":" + id), document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty.set(true);
+    }
+
+    public void remove(String type, Long id) {
+
+        try {
+            writer.deleteDocuments(new Term(KEY, type + ":" + id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * 이름에 text 가 들어 있는(또는 형태소가 모두 맞는) ID 목록
+     * @return 색인으로 답할 수 없으면(맞는 문서가 너무 많으면) null
+     */
+    public List<Long> findIds(String type, String text) {
+
+        List<String> grams = text.length() == 1 ? tokens(ngramAnalyzer, text) : tokens(ngramQueryAnalyzer, text);
+        List<String> words = tokens(koreanAnalyzer, text);
+
+        BooleanQuery.Builder names = new BooleanQuery.Builder();
+        names.add(allOf(NGRAM, grams), BooleanClause.Occur.SHOULD);
+        if (!words.isEmpty()) {
+            names.add(allOf(KOREAN, words), BooleanClause.Occur.SHOULD);
+        }
+        BooleanQuery query = new BooleanQuery.Builder()
+            .add(new TermQuery(new Term(TYPE, type)), BooleanClause.Occur.FILTER)
+            .add(names.build(), BooleanClause.Occur.MUST)
+            .build();
+
+        try {
+            if (dirty.getAndSet(false)) {
+                searcherManager.maybeRefreshBlocking();
+            }
+
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query, MAX_MATCHES + 1);
+                if (topDocs.scoreDocs.length > MAX_MATCHES) {
+                    return null;
+                }
+
+                List<Long> ids = new ArrayList<>();
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    Document document = searcher.doc(scoreDoc.doc);
+                    String name = document.get(RAW_NAME);
+                    //n-gram 후보는 실제로 포함하는지, 형태소 후보는 형태소가 모두 있는지 확인
+                    if (name.contains(text)
+                        || (!words.isEmpty() && tokens(koreanAnalyzer, name).containsAll(words))) {
+                        ids.add(document.getField(ID).numericValue().longValue());
+                    }
+                }
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void commit() {
+
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 남은 변경을 커밋하면서 정상 종료 표시를 남긴다.
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.setLiveCommitData(Collections.singletonMap(CLEAN_SHUTDOWN, "true").entrySet(), true);
+        writer.close();
+        directory.close();
+    }
+
+    private static BooleanQuery allOf(String field, List<String> terms) {
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            query.add(new TermQuery(new Term(field, term)), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private static List<String> tokens(Analyzer analyzer, String text) {
+
+        Set<String> tokens = new LinkedHashSet<>();
+        try (TokenStream stream = analyzer.tokenStream("", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static Analyzer ngramAnalyzer(int minGram, int maxGram) {
+
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new NGramTokenizer(minGram, maxGram);
+                return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package jpabook.jpashop.search;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 회원/상품 이름 색인 동기화 (커밋된 변경만 반영한다)
+ * 스프링 부트가 Hibernate 에 SpringBeanContainer 를 등록하므로 주입을 받을 수 있다.
+ */
+public class NameIndexListener {
+
+    @Autowired(required = false) NameIndex nameIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void index(Object entity) {
+
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            afterCommit(() -> nameIndex.index(NameIndex.MEMBER, member.getId(), member.getName()));
+        } else if (entity instanceof Item) {
+            Item item = (Item) entity;
+            afterCommit(() -> nameIndex.index(NameIndex.ITEM, item.getId(), item.getName()));
+        }
+    }
+
+    @PostRemove
+    public void remove(Object entity) {
+
+        if (entity instanceof Member) {
+            Long memberId = ((Member) entity).getId();
+            afterCommit(() -> nameIndex.remove(NameIndex.MEMBER, memberId));
+        } else if (entity instanceof Item) {
+            Long itemId = ((Item) entity).getId();
+            afterCommit(() -> nameIndex.remove(NameIndex.ITEM, itemId));
+        }
+    }
+
+    private void afterCommit(Runnable work) {
+
+        if (nameIndex == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            work.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                work.run();
+            }
+        });
+    }
+}
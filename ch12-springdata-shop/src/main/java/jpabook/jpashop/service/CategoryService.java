@@ -0,0 +1,62 @@
+package jpabook.jpashop.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jpabook.jpashop.domain.CategoryNode;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@Transactional(readOnly = true)
+public class CategoryService {
+
+    @Autowired CategoryRepository categoryRepository;
+    @Autowired ItemRepository itemRepository;
+
+    /**
+     * 카테고리 하위 트리 (쿼리 한 번, 노드마다 추가 쿼리 없음)
+     * @return 시작 카테고리 노드, 없으면 null
+     */
+    public CategoryNode findTree(Long categoryId) {
+
+        List<Object[]> rows = categoryRepository.findSubtreeRows(categoryId);
+
+        //깊이 순으로 오므로 상위 노드가 항상 먼저 만들어진다
+        Map<Long, CategoryNode> nodes = new HashMap<>();
+        CategoryNode root = null;
+        for (Object[] row : rows) {
+            Long id = toLong(row[0]);
+            if (nodes.containsKey(id)) {
+                continue;   //순환으로 다시 나온 카테고리 (처음 나온 가장 얕은 위치만 쓴다)
+            }
+            CategoryNode node = new CategoryNode(id, toLong(row[1]), (String) row[2], ((Number) row[3]).intValue());
+            if (root == null) {
+                root = node;
+            } else {
+                CategoryNode parent = nodes.get(node.getParentId());
+                if (parent == null) {
+                    continue;   //부모가 트리에 없는 행 (조회 중에 부모가 바뀐 경우 등)
+                }
+                parent.getChildren().add(node);
+            }
+            nodes.put(id, node);
+        }
+        return root;
+    }
+
+    /**
+     * 카테고리와 모든 하위 카테고리의 상품
+     */
+    public List<Item> findItems(Long categoryId) {
+        return itemRepository.findInCategorySubtree(categoryId);
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+}
@@ -0,0 +1,217 @@
+package jpabook.jpashop.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import jpabook.jpashop.domain.ItemSalesDaily;
+import jpabook.jpashop.domain.ItemSalesDelta;
+import jpabook.jpashop.domain.ItemSalesDto;
+import jpabook.jpashop.domain.ItemSalesId;
+import jpabook.jpashop.domain.OrderEvent;
+import jpabook.jpashop.repository.ItemSalesDailyRepository;
+import jpabook.jpashop.repository.ItemSalesDeltaRepository;
+import jpabook.jpashop.repository.shard.OrderShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 상품별 일 판매 집계
+ *
+ * 주문/취소 아웃박스 이벤트(OrderEvent)를 받아 주문상품마다 ItemSalesDelta 를 INSERT 한다. OutboxRelay 가 전달한 이벤트를
+ * 지우는 트랜잭션 안에서 받으므로 이벤트를 다시 전달해도 두 번 반영되지 않는다. compact 가 주기적으로 변화량을
+ * (상품, 주문일)별 ItemSalesDaily 로 합치고, 조회는 ItemSalesDaily 에 아직 합치지 않은 변화량을 더한다.
+ * 샤딩을 켜면 주문과 같은 샤드에 쌓이고, 조회할 때 샤드별 합계를 더한다.
+ * 압축은 여러 인스턴스에서 돌아도 된다. 읽은 변화량에 쓰기 잠금을 걸고, 지운 행 수가 읽은 수와 다르면(다른 인스턴스가
+ * 먼저 합쳤으면) 묶음 전체를 롤백하므로 같은 변화량이 두 번 합쳐지지 않는다.
+ */
+@Service
+@Transactional
+public class ItemSalesService {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemSalesService.class);
+
+    private static final String ORDER_LINES = "select oi.item.id, oi.orderPrice, oi.count, o.orderDate"
+        + " from OrderItem oi join oi.order o where o.id = :orderId";
+
+    @Value("${jpashop.sales.compaction-batch-size:1000}") int compactionBatchSize;
+
+    @PersistenceContext EntityManager em;
+
+    @Autowired ItemSalesDeltaRepository itemSalesDeltaRepository;
+    @Autowired ItemSalesDailyRepository itemSalesDailyRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired OrderShards orderShards;
+
+    /**
+     * 주문상품마다 변화량 기록 (OutboxRelay 트랜잭션에 참여)
+     */
+    @EventListener
+    public void onOrderEvent(OrderEvent event) {
+
+        List<Object[]> lines = em.createQuery(ORDER_LINES, Object[].class)
+            .setParameter("orderId", event.getOrderId())
+            .getResultList();
+
+        for (Object[] line : lines) {
+            Long itemId = (Long) line[0];
+            int orderPrice = (Integer) line[1];
+            int count = (Integer) line[2];
+            Date orderDate = (Date) line[3];
+
+            switch (event.getEventType()) {
+                case ORDER_PLACED:
+                    em.persist(ItemSalesDelta.ordered(itemId, orderDate, orderPrice, count));
+                    break;
+                case ORDER_CANCELED:
+                    em.persist(ItemSalesDelta.canceled(itemId, orderDate, orderPrice, count));
+                    break;
+                default:
+                    throw new IllegalArgumentException("알 수 없는 주문 이벤트입니다. " + event);
+            }
+        }
+    }
+
+    /**
+     * 샤드마다 쌓인 변화량을 모두 합칠 때까지 반복
+     */
+    @Scheduled(fixedDelayString = "${jpashop.sales.compaction-interval-millis:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void compact() {
+
+        for (int shard = 0; shard < orderShards.getShardCount(); shard++) {
+            try {
+                while (orderShards.inShard(shard, this::compactBatch) == compactionBatchSize) {
+                    //가득 찬 묶음이면 바로 다음 묶음
+                }
+            } catch (ConcurrentCompactionException | PessimisticLockingFailureException e) {
+                //롤백된 묶음은 다음 주기에 다시 합친다
+                log.warn("다른 압축과 겹쳐 롤백 shard={}", shard, e);
+            }
+        }
+    }
+
+    /**
+     * 변화량 한 묶음을 일 집계에 합치고 지운다 (읽은 행만 지우므로 그 사이 커밋된 변화량은 다음 묶음에 남는다)
+     * @return 합친 변화량 수
+     */
+    private int compactBatch() {
+
+        return new TransactionTemplate(transactionManager).execute(status -> {
+
+            List<ItemSalesDelta> deltas = itemSalesDeltaRepository.findBatch(PageRequest.of(0, compactionBatchSize));
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+
+            Set<ItemSalesId> salesIds = new HashSet<>();
+            for (ItemSalesDelta delta : deltas) {
+                salesIds.add(delta.getSalesId());
+            }
+            Map<ItemSalesId, ItemSalesDaily> dailies = new HashMap<>();
+            for (ItemSalesDaily daily : itemSalesDailyRepository.findAllById(salesIds)) {
+                dailies.put(daily.getId(), daily);
+            }
+
+            List<Long> deltaIds = new ArrayList<>();
+            for (ItemSalesDelta delta : deltas) {
+                ItemSalesDaily daily = dailies.get(delta.getSalesId());
+                if (daily == null) {
+                    daily = new ItemSalesDaily(delta.getSalesId());
+                    em.persist(daily);
+                    dailies.put(daily.getId(), daily);
+                }
+                daily.add(delta);   //변경 감지로 UPDATE
+                deltaIds.add(delta.getId());
+            }
+
+            int deleted = itemSalesDeltaRepository.deleteByIds(deltaIds);
+            if (deleted != deltaIds.size()) {
+                //그 사이 다른 압축이 일부를 합치고 지웠다 - 이 묶음의 합산을 버린다
+                throw new ConcurrentCompactionException(deltaIds.size(), deleted);
+            }
+            return deltas.size();
+        });
+    }
+
+    /**
+     * 읽은 변화량 중 일부가 이미 지워져 있음 (트랜잭션 롤백용)
+     */
+    static class ConcurrentCompactionException extends RuntimeException {
+
+        ConcurrentCompactionException(int expected, int deleted) {
+            super("압축할 변화량 " + expected + "건 중 " + deleted + "건만 지웠습니다.");
+        }
+    }
+
+    /**
+     * 기간 내 상품별 판매 합계 (상품 ID 순)
+     */
+    @Transactional(readOnly = true)
+    public List<ItemSalesDto> findSalesByItem(Date from, Date to) {
+
+        Map<Long, long[]> sums = sum(() -> {
+            List<ItemSalesDto> sales = new ArrayList<>(itemSalesDailyRepository.sumByItem(from, to));
+            sales.addAll(itemSalesDeltaRepository.sumByItem(from, to));
+            return sales;
+        }, ItemSalesDto::getItemId);
+
+        List<ItemSalesDto> sales = new ArrayList<>();
+        sums.forEach((itemId, sum) -> sales.add(new ItemSalesDto(itemId, sum[0], sum[1], sum[2], sum[3])));
+        return sales;
+    }
+
+    /**
+     * 기간 내 일별 판매 합계 (날짜 순)
+     */
+    @Transactional(readOnly = true)
+    public List<ItemSalesDto> findSalesByDay(Date from, Date to) {
+
+        Map<Long, long[]> sums = sum(() -> {
+            List<ItemSalesDto> sales = new ArrayList<>(itemSalesDailyRepository.sumByDay(from, to));
+            sales.addAll(itemSalesDeltaRepository.sumByDay(from, to));
+            return sales;
+        }, dto -> dto.getSalesDate().getTime());
+
+        List<ItemSalesDto> sales = new ArrayList<>();
+        sums.forEach((day, sum) -> sales.add(new ItemSalesDto(new Date(day), sum[0], sum[1], sum[2], sum[3])));
+        return sales;
+    }
+
+    /**
+     * 샤드별 합계와 변화량 합계를 키별로 더한다 {주문 수량, 주문 금액, 취소 수량, 취소 금액}
+     */
+    private Map<Long, long[]> sum(Supplier<List<ItemSalesDto>> query, Function<ItemSalesDto, Long> key) {
+
+        Map<Long, long[]> sums = new TreeMap<>();
+        for (List<ItemSalesDto> salesOfShard : orderShards.scatter(query)) {
+            for (ItemSalesDto dto : salesOfShard) {
+                long[] sum = sums.computeIfAbsent(key.apply(dto), k -> new long[4]);
+                sum[0] += dto.getQuantity();
+                sum[1] += dto.getRevenue();
+                sum[2] += dto.getCanceledQuantity();
+                sum[3] += dto.getCanceledRevenue();
+            }
+        }
+        return sums;
+    }
+}
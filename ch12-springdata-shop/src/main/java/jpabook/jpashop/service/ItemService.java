@@ -1,8 +1,12 @@
 package jpabook.jpashop.service;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.shard.GlobalReplicator;
+import jpabook.jpashop.search.NameIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,15 +18,46 @@ public class ItemService {
     @Autowired
     ItemRepository itemRepository;
 
+    @Autowired
+    StockReservationEngine stockReservationEngine;
+
+    @Autowired(required = false)
+    NameIndex nameIndex;
+
+    @Autowired
+    GlobalReplicator globalReplicator;
+
     public void saveItem(Item item) {
         itemRepository.save(item);
+        stockReservationEngine.reconcile(item.getId());
+        globalReplicator.replicateAfterCommit(GlobalReplicator.Table.ITEM, Collections.singletonList(item.getId()));
     }
 
+    @Transactional(readOnly = true)
     public List<Item> findItems() {
         return itemRepository.findAll();
     }
 
+    public List<Item> findItems(Collection<Long> itemIds) {
+        return itemRepository.findAllById(itemIds);
+    }
+
+    /**
+     * 이름으로 상품 검색 (이름 색인이 있으면 색인으로 ID 를 찾는다, GET /items?name=)
+     */
+    @Transactional(readOnly = true)
+    public List<Item> findItemsByName(String name) {
+
+        List<Long> itemIds = nameIndex == null ? null : nameIndex.findIds(NameIndex.ITEM, name);
+        //답할 수 없거나 맞는 상품이 없으면(색인이 아직 반영하지 못한 상품일 수 있다) LIKE
+        if (itemIds == null || itemIds.isEmpty()) {
+            return itemRepository.findByNameContaining(name);
+        }
+        return itemRepository.findAllById(itemIds);
+    }
+
     public Item findById(Long itemId) {
-        return itemRepository.findById(itemId);
+        return itemRepository.findById(itemId)
+            .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + itemId));
     }
 }
@@ -0,0 +1,94 @@
+package jpabook.jpashop.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import jpabook.jpashop.repository.MemberRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 가입된 회원 이름 블룸 필터
+ *
+ * mightContain 이 false 면 그 이름은 확실히 없다. true 면 DB 로 확인해야 한다.
+ * 시작 시 전체 회원 이름으로 채우기 전까지는 항상 true 를 돌려준다.
+ */
+@Component
+public class MemberNameFilter {
+
+    private static final int BIT_SIZE = 1 << 24;   //약 1,600만 비트 (회원 100만 명 기준 오탐률 약 1%)
+    private static final int HASH_COUNT = 7;
+
+    @Autowired MemberRepository memberRepository;
+
+    private final AtomicLongArray bits = new AtomicLongArray(BIT_SIZE / Long.SIZE);
+    private volatile boolean warmed;
+
+    /**
+     * 시작 시 전체 회원 이름으로 채운다.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+
+        try (Stream<String> names = memberRepository.streamAllNames()) {
+            names.filter(Objects::nonNull).forEach(this::put);
+        }
+        warmed = true;
+    }
+
+    public boolean mightContain(String name) {
+
+        if (!warmed || name == null) {
+            return true;
+        }
+
+        long hash = hash(name);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = bitIndex(hash, i);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(String name) {
+
+        if (name == null) {
+            return; //이름 없는 회원은 중복 검사 대상이 아니다
+        }
+
+        long hash = hash(name);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = bitIndex(hash, i);
+            long mask = 1L << bit;
+            int index = bit >>> 6;
+            long current;
+            do {
+                current = bits.get(index);
+            } while ((current & mask) == 0 && !bits.compareAndSet(index, current, current | mask));
+        }
+    }
+
+    //이중 해싱 (h1 + i * h2)
+    private static int bitIndex(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return ((h1 + i * h2) & Integer.MAX_VALUE) % BIT_SIZE;
+    }
+
+    //FNV-1a 64
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
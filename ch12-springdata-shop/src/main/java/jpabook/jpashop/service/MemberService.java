@@ -3,7 +3,9 @@ package jpabook.jpashop.service;
 import java.util.List;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.repository.MemberRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,29 +13,64 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class MemberService {
 
+    private static final String UK_MEMBER_NAME = "UK_MEMBER_NAME";
+
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MemberNameFilter memberNameFilter;
+
     /**
      * 회원 가입
      */
     public Long join(Member member) {
 
         validateDuplicateMember(member); //중복 회원 검증
-        memberRepository.save(member);
+        try {
+            memberRepository.saveAndFlush(member);
+        } catch (DataIntegrityViolationException e) {
+            if (!isDuplicateName(e)) {
+                throw e;    //이름 중복이 아닌 무결성 위반 (NOT NULL 등)
+            }
+            //동시에 같은 이름으로 가입 - UK_MEMBER_NAME 위반
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+        }
+        memberNameFilter.put(member.getName());
         return member.getId();
     }
 
     private void validateDuplicateMember(Member member) {
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-        if (!findMembers.isEmpty()) {
+        //블룸 필터에 없으면 DB 조회 생략
+        if (memberNameFilter.mightContain(member.getName())
+            && memberRepository.existsByName(member.getName())) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
 
+    /**
+     * UK_MEMBER_NAME 위반인지 (Hibernate 가 알아낸 제약 조건 이름, 없으면 드라이버 메시지로 확인)
+     */
+    private static boolean isDuplicateName(DataIntegrityViolationException e) {
+
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                if (constraintName != null) {
+                    return constraintName.toUpperCase().contains(UK_MEMBER_NAME);
+                }
+            }
+            if (cause.getMessage() != null && cause.getMessage().toUpperCase().contains(UK_MEMBER_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 전체 회원 조회
      */
+    @Transactional(readOnly = true)
     public List<Member> findMembers() {
         return memberRepository.findAll();
     }
@@ -1,14 +1,43 @@
 package jpabook.jpashop.service;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import jpabook.jpashop.domain.Delivery;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderCursor;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderLine;
+import jpabook.jpashop.domain.OrderListDto;
 import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderTotalDto;
+import jpabook.jpashop.domain.OutboxEvent;
+import jpabook.jpashop.domain.OutboxEventType;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.MemberRepository;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OutboxEventRepository;
+import jpabook.jpashop.repository.shard.GlobalReplicator;
+import jpabook.jpashop.repository.shard.OrderShards;
+import jpabook.jpashop.repository.shard.ShardKey;
+import jpabook.jpashop.retry.RetryOnConflict;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,50 +46,361 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class OrderService {
 
+    //대량 주문 시 플러시/초기화 단위 (hibernate.jdbc.batch_size 와 맞춘다)
+    private static final int BULK_CHUNK_SIZE = 50;
+
+    //샤드별 결과 병합 순서 (최신순)
+    private static final Comparator<Order> NEWEST_FIRST = Comparator.comparing(Order::getOrderDate)
+        .thenComparing(Order::getId).reversed();
+    private static final Comparator<Order> TOTAL_PRICE_DESC = Comparator.comparing(Order::getTotalPrice)
+        .thenComparing(Order::getId).reversed();
+    private static final Comparator<OrderListDto> NEWEST_LINE_FIRST = Comparator.comparing(OrderListDto::getOrderDate)
+        .thenComparing(OrderListDto::getOrderId).reversed();
+
+    @PersistenceContext EntityManager em;
+
     @Autowired MemberRepository memberRepository;
     @Autowired OrderRepository orderRepository;
+    @Autowired OutboxEventRepository outboxEventRepository;
     @Autowired ItemService itemService;
+    @Autowired StockReservationEngine stockReservationEngine;
+    @Autowired OrderShards orderShards;
+    @Autowired GlobalReplicator globalReplicator;
 
     /**
      * 주문
      */
-    public Long order(Long memberId, Long itemId, int count) {
+    @RetryOnConflict
+    public Long order(@ShardKey Long memberId, Long itemId, int count) {
+        return placeOrder(memberId, itemId, count).getId();
+    }
+
+    /**
+     * 묶음 주문 (OrderWriteQueue)
+     * 주문마다 결과를 기록하고 실패한 주문만 빼고 한 트랜잭션으로 저장한다. INSERT 는 커밋 시 플러시에서 JDBC 배치로 나간다.
+     * 트랜잭션이 롤백 전용이 되는 실패는 커밋에서 예외가 나므로 호출한 쪽이 한 건씩 다시 저장한다.
+     */
+    public void orderGroup(List<PendingOrder> pendingOrders) {
+
+        for (PendingOrder pendingOrder : pendingOrders) {
+            try {
+                Order order = placeOrder(pendingOrder.getMemberId(), pendingOrder.getItemId(), pendingOrder.getCount());
+                pendingOrder.placed(order.getId());
+            } catch (RuntimeException e) {
+                pendingOrder.failed(e);
+            }
+        }
+    }
+
+    private Order placeOrder(Long memberId, Long itemId, int count) {
+
+        //주문 샤드에 회원/상품 복사본이 없으면 전역 샤드에서 복사
+        globalReplicator.ensureLocal(GlobalReplicator.Table.MEMBER, memberId);
+        globalReplicator.ensureLocal(GlobalReplicator.Table.ITEM, itemId);
 
         //엔티티 조회
-        Member member = memberRepository.findById(memberId);
+        Member member = memberRepository.findById(memberId)
+            .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 회원입니다. memberId=" + memberId));
         Item item = itemService.findById(itemId);
 
-        //배송정보 생성
-        Delivery delivery = new Delivery(member.getAddress());
-        //주문상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
-        //주문 생성
-        Order order = Order.createOrder(member, delivery, orderItem);
+        //재고 선점
+        stockReservationEngine.reserve(itemId, count);
+
+        try {
+            //배송정보 생성
+            Delivery delivery = new Delivery(member.getAddress());
+            //주문상품 생성
+            OrderItem orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), count);
+            //주문 생성
+            Order order = Order.createOrder(member, delivery, orderItem);
 
-        //주문 저장
-        orderRepository.save(order);
-        return order.getId();
+            //주문 저장
+            orderRepository.save(order);
+            //후속 처리는 아웃박스로 (OutboxRelay)
+            outboxEventRepository.save(OutboxEvent.of(OutboxEventType.ORDER_PLACED, order));
+            return order;
+        } catch (RuntimeException e) {
+            //묶음 주문은 이 주문만 빼고 커밋하므로 선점한 재고를 직접 되돌린다
+            stockReservationEngine.release(itemId, count);
+            throw e;
+        }
     }
 
+    /**
+     * 대량 주문
+     * 회원별로 주문상품을 묶어 주문 하나로 만들고, BULK_CHUNK_SIZE 건마다 플러시 후 영속성 컨텍스트를 비운다.
+     * 샤딩을 켜면 샤드별 트랜잭션으로 나누어 저장한다 (샤드 사이에는 원자성이 없다).
+     */
+    public List<Long> orderAll(List<OrderLine> orderLines) {
+
+        if (!orderShards.isEnabled()) {
+            return orderLines(orderLines);
+        }
+
+        List<Long> orderIds = new ArrayList<>();
+        for (Map.Entry<Integer, List<OrderLine>> shardLines
+            : orderShards.groupByMember(orderLines, OrderLine::getMemberId).entrySet()) {
+            orderIds.addAll(orderShards.inShard(shardLines.getKey(), () -> orderLines(shardLines.getValue())));
+        }
+        return orderIds;
+    }
+
+    private List<Long> orderLines(List<OrderLine> orderLines) {
+
+        //회원별 주문상품 (입력 순서 유지)
+        Map<Long, List<OrderLine>> linesByMember = new LinkedHashMap<>();
+        for (OrderLine orderLine : orderLines) {
+            linesByMember.computeIfAbsent(orderLine.getMemberId(), memberId -> new ArrayList<>())
+                .add(orderLine);
+        }
+
+        List<Long> orderIds = new ArrayList<>();
+        List<List<OrderLine>> chunk = new ArrayList<>();
+        for (List<OrderLine> memberLines : linesByMember.values()) {
+            chunk.add(memberLines);
+            if (chunk.size() == BULK_CHUNK_SIZE) {
+                orderIds.addAll(orderChunk(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            orderIds.addAll(orderChunk(chunk));
+        }
+        return orderIds;
+    }
+
+    private List<Long> orderChunk(List<List<OrderLine>> chunk) {
+
+        Set<Long> memberIds = new HashSet<>();
+        Set<Long> itemIds = new HashSet<>();
+        for (List<OrderLine> memberLines : chunk) {
+            for (OrderLine orderLine : memberLines) {
+                memberIds.add(orderLine.getMemberId());
+                itemIds.add(orderLine.getItemId());
+            }
+        }
+
+        globalReplicator.ensureLocal(GlobalReplicator.Table.MEMBER, memberIds);
+        globalReplicator.ensureLocal(GlobalReplicator.Table.ITEM, itemIds);
+
+        //엔티티 조회 (IN 절 한 번씩)
+        Map<Long, Member> members = new HashMap<>();
+        for (Member member : memberRepository.findAllById(memberIds)) {
+            members.put(member.getId(), member);
+        }
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemService.findItems(itemIds)) {
+            items.put(item.getId(), item);
+        }
+
+        List<Order> orders = new ArrayList<>();
+        for (List<OrderLine> memberLines : chunk) {
+
+            Member member = members.get(memberLines.get(0).getMemberId());
+            if (member == null) {
+                throw new IllegalArgumentException("존재하지 않는 회원입니다. memberId=" + memberLines.get(0).getMemberId());
+            }
+
+            //주문상품 생성
+            OrderItem[] orderItems = new OrderItem[memberLines.size()];
+            for (int i = 0; i < orderItems.length; i++) {
+                OrderLine orderLine = memberLines.get(i);
+                Item item = items.get(orderLine.getItemId());
+                if (item == null) {
+                    throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + orderLine.getItemId());
+                }
+                stockReservationEngine.reserve(item.getId(), orderLine.getCount());
+                orderItems[i] = OrderItem.createReservedOrderItem(item, item.getPrice(), orderLine.getCount());
+            }
+
+            //주문 생성 및 저장
+            Order order = Order.createOrder(member, new Delivery(member.getAddress()), orderItems);
+            em.persist(order);
+            em.persist(OutboxEvent.of(OutboxEventType.ORDER_PLACED, order));
+            orders.add(order);
+        }
+
+        em.flush();
+        em.clear();
+
+        List<Long> orderIds = new ArrayList<>();
+        for (Order order : orders) {
+            orderIds.add(order.getId());
+        }
+        return orderIds;
+    }
 
     /**
      * 주문 취소
      */
-    public void cancelOrder(Long orderId) {
+    @RetryOnConflict
+    public void cancelOrder(@ShardKey(ShardKey.Type.ORDER_ID) Long orderId) {
 
         //주문 엔티티 조회
-        Order order = orderRepository.findById(orderId);
+        Order order = orderRepository.findById(orderId)
+            .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 주문입니다. orderId=" + orderId));
 
         //주문 취소
-        order.cancel();
+        order.cancelWithoutRestock();
+
+        //재고 복구
+        for (OrderItem orderItem : order.getOrderItems()) {
+            stockReservationEngine.release(orderItem.getItem().getId(), orderItem.getCount());
+        }
+
+        outboxEventRepository.save(OutboxEvent.of(OutboxEventType.ORDER_CANCELED, order));
     }
 
     /**
      * 주문 검색
      */
+    @Transactional(readOnly = true)
     public List<Order> findOrders(OrderSearch orderSearch) {
-    	return orderRepository.findAll(orderSearch.toSpecification()); // Specification 사용
+        if (orderShards.isEnabled()) {
+            return searchShards(orderSearch, () -> orderRepository.searchWithItems(orderSearch),
+                NEWEST_FIRST, Integer.MAX_VALUE);
+        }
+    	return orderRepository.searchWithItems(orderSearch); //QueryDSL 페치 조인 사용
+    	//return orderRepository.findAll(orderSearch.toSpecification()); // Specification 사용
     	//return orderRepository.search(orderSearch);  //QueryDSL 사용
     }
 
+    /**
+     * 주문 목록 조회 (DTO)
+     */
+    @Transactional(readOnly = true)
+    public List<OrderListDto> findOrderList(OrderSearch orderSearch) {
+        if (orderShards.isEnabled()) {
+            return searchShards(orderSearch, () -> orderRepository.searchListDto(orderSearch),
+                NEWEST_LINE_FIRST, Integer.MAX_VALUE);
+        }
+        return orderRepository.searchListDto(orderSearch);
+    }
+
+    /**
+     * 주문 내역 CSV 내보내기 (주문상품 한 줄씩)
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(OrderSearch orderSearch, Writer writer) {
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        PrintWriter out = new PrintWriter(writer);
+        out.println("orderId,orderDate,status,memberName,itemName,orderPrice,count");
+
+        //샤딩을 켜면 샤드 순서대로 이어서 내보낸다
+        for (int shard : shardsOf(orderSearch)) {
+            orderShards.inShard(shard, () -> {
+                exportOrderItems(orderSearch, out, dateFormat);
+                return null;
+            });
+        }
+
+        out.flush();
+        if (out.checkError()) {
+            throw new UncheckedIOException(new IOException("주문 내역 내보내기에 실패했습니다."));
+        }
+    }
+
+    private void exportOrderItems(OrderSearch orderSearch, PrintWriter out, SimpleDateFormat dateFormat) {
+
+        orderRepository.scrollOrderItems(orderSearch, orderItem -> {
+            Order order = orderItem.getOrder();
+            out.print(order.getId());
+            out.print(',');
+            out.print(dateFormat.format(order.getOrderDate()));
+            out.print(',');
+            out.print(order.getStatus());
+            out.print(',');
+            out.print(csv(order.getMember().getName()));
+            out.print(',');
+            out.print(csv(orderItem.getItem().getName()));
+            out.print(',');
+            out.print(orderItem.getOrderPrice());
+            out.print(',');
+            out.println(orderItem.getCount());
+        });
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * 주문 검색 (키셋 페이징)
+     */
+    @Transactional(readOnly = true)
+    public List<Order> findOrders(OrderSearch orderSearch, OrderCursor cursor, int size) {
+        if (orderShards.isEnabled()) {
+            //샤드마다 size 건씩 읽고 병합해서 size 건만 남긴다
+            return searchShards(orderSearch, () -> orderRepository.searchAfter(orderSearch, cursor, size),
+                NEWEST_FIRST, size);
+        }
+        return orderRepository.searchAfter(orderSearch, cursor, size);
+    }
+
+    /**
+     * 주문 총액이 큰 주문 size 건
+     */
+    @Transactional(readOnly = true)
+    public List<Order> findLargestOrders(OrderSearch orderSearch, int size) {
+        if (orderShards.isEnabled()) {
+            return searchShards(orderSearch, () -> orderRepository.searchByTotalPrice(orderSearch, size),
+                TOTAL_PRICE_DESC, size);
+        }
+        return orderRepository.searchByTotalPrice(orderSearch, size);
+    }
+
+    /**
+     * 기간 내 상태별 주문 합계 (샤딩을 켜면 샤드별 합계를 더한다)
+     */
+    @Transactional(readOnly = true)
+    public List<OrderTotalDto> sumOrderTotals(Date from, Date to) {
+
+        List<List<OrderTotalDto>> shardTotals = orderShards.scatter(
+            () -> orderRepository.sumTotalPriceByStatus(from, to));
+
+        Map<OrderStatus, long[]> sums = new LinkedHashMap<>();   //상태별 {주문 수, 총액}
+        for (List<OrderTotalDto> totalsOfShard : shardTotals) {
+            for (OrderTotalDto total : totalsOfShard) {
+                long[] sum = sums.computeIfAbsent(total.getStatus(), status -> new long[2]);
+                sum[0] += total.getOrderCount();
+                sum[1] += total.getTotalPrice();
+            }
+        }
+
+        List<OrderTotalDto> totals = new ArrayList<>();
+        sums.forEach((status, sum) -> totals.add(new OrderTotalDto(status, sum[0], sum[1])));
+        return totals;
+    }
+
+    /**
+     * 회원 ID 조건이 있으면 그 회원의 샤드만, 없으면 모든 샤드를 조회해서 병합
+     */
+    private <T> List<T> searchShards(OrderSearch orderSearch, Supplier<List<T>> query,
+        Comparator<? super T> comparator, int limit) {
+
+        if (orderSearch.getMemberId() != null) {
+            return orderShards.inShard(orderShards.shardOfMember(orderSearch.getMemberId()), query);
+        }
+        return orderShards.scatterSorted(query, comparator, limit);
+    }
+
+    private List<Integer> shardsOf(OrderSearch orderSearch) {
+
+        if (orderSearch.getMemberId() != null) {
+            return Collections.singletonList(orderShards.shardOfMember(orderSearch.getMemberId()));
+        }
+        List<Integer> shards = new ArrayList<>();
+        for (int i = 0; i < orderShards.getShardCount(); i++) {
+            shards.add(i);
+        }
+        return shards;
+    }
+
 }
@@ -0,0 +1,192 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import jpabook.jpashop.metrics.StatementCountInspector;
+import jpabook.jpashop.repository.shard.OrderShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * 주문 묶음 커밋
+ *
+ * 요청 스레드는 주문을 크기 제한이 있는 대기열에 넣고 바로 돌아온다. 쓰기 스레드 하나가 maxBatch 건이 모이거나
+ * 첫 주문부터 maxWaitMillis 가 지나면 한꺼번에 꺼내 샤드별 트랜잭션 하나로 저장하고(커밋할 때 JDBC 배치로 INSERT),
+ * 커밋이 끝난 뒤 각 주문의 future 를 주문 ID 로 완료한다.
+ * 검증 실패(회원/상품 없음, 재고 부족)는 그 주문에만 돌려주고, 묶음 커밋 자체가 실패하면 한 건씩 다시 저장해서
+ * 실패를 원인이 된 주문에만 돌려준다. 대기열이 가득 차면 바로 RejectedExecutionException 으로 완료한다.
+ *
+ * 메트릭: jpashop.order.group.size (묶음 크기), jpashop.order.group.fallbacks (한 건씩 다시 저장),
+ * jpashop.order.group.rejected (대기열 초과), jpashop.order.group.queue (대기 건수)
+ */
+@Service
+@ConditionalOnProperty(name = "jpashop.order.group-commit.enabled", havingValue = "true")
+public class OrderWriteQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderWriteQueue.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long SHUTDOWN_WAIT_MILLIS = 10_000;
+
+    @Value("${jpashop.order.group-commit.queue-capacity:10000}") int queueCapacity;
+    @Value("${jpashop.order.group-commit.max-batch:50}") int maxBatch;
+    @Value("${jpashop.order.group-commit.max-wait-millis:5}") long maxWaitMillis;
+
+    @Autowired OrderService orderService;
+    @Autowired OrderShards orderShards;
+    @Autowired MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingOrder> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private DistributionSummary groups;
+    private Counter fallbacks;
+    private Counter rejected;
+
+    @PostConstruct
+    public void start() {
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        groups = DistributionSummary.builder("jpashop.order.group.size")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        fallbacks = meterRegistry.counter("jpashop.order.group.fallbacks");
+        rejected = meterRegistry.counter("jpashop.order.group.rejected");
+        meterRegistry.gauge("jpashop.order.group.queue", queue, BlockingQueue::size);
+
+        running = true;
+        writer = new Thread(this::drain, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 주문 (커밋되면 주문 ID 로 완료)
+     */
+    public CompletableFuture<Long> submit(Long memberId, Long itemId, int count) {
+
+        //주문 SQL 은 쓰기 스레드가 여러 요청을 묶어 실행하므로 요청당 SQL 수 집계에서 뺀다
+        StatementCountInspector.exclude();
+        PendingOrder pendingOrder = new PendingOrder(memberId, itemId, count);
+        if (!running || !queue.offer(pendingOrder)) {
+            rejected.increment();
+            pendingOrder.getFuture().completeExceptionally(
+                new RejectedExecutionException("주문 대기열이 가득 찼습니다."));
+        }
+        return pendingOrder.getFuture();
+    }
+
+    /**
+     * 대기열이 빌 때까지 남은 주문을 저장하고 멈춘다.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        running = false;
+        writer.join(SHUTDOWN_WAIT_MILLIS);
+
+        //제한 시간 안에 저장하지 못한 주문
+        List<PendingOrder> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (PendingOrder pendingOrder : rest) {
+            pendingOrder.failed(new RejectedExecutionException("주문 대기열이 종료되었습니다."));
+            pendingOrder.complete();
+        }
+    }
+
+    private void drain() {
+
+        List<PendingOrder> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                //maxBatch 건이 모이거나 첫 주문부터 maxWaitMillis 가 지날 때까지 모은다
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (group.size() < maxBatch) {
+                    queue.drainTo(group, maxBatch - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+
+                write(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                //write 는 예외를 주문별로 돌려주므로 여기까지 오면 버그다. 쓰기 스레드는 계속 돈다.
+                log.error("주문 묶음 커밋 스레드 오류", e);
+                for (PendingOrder pendingOrder : group) {
+                    if (!pendingOrder.getFuture().isDone()) {
+                        pendingOrder.failed(e);
+                        pendingOrder.complete();
+                    }
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingOrder> group) {
+
+        groups.record(group.size());
+        for (Map.Entry<Integer, List<PendingOrder>> shardGroup
+            : orderShards.groupByMember(group, PendingOrder::getMemberId).entrySet()) {
+            writeShard(shardGroup.getKey(), shardGroup.getValue());
+        }
+    }
+
+    private void writeShard(int shard, List<PendingOrder> pendingOrders) {
+
+        try {
+            orderShards.inShard(shard, () -> {
+                orderService.orderGroup(pendingOrders);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            //묶음 전체가 롤백됐다 - 한 건씩 자기 트랜잭션으로 다시 저장 (충돌 재시도 포함)
+            fallbacks.increment();
+            log.warn("주문 묶음 커밋 실패, 한 건씩 다시 저장합니다. size={}", pendingOrders.size(), e);
+            for (PendingOrder pendingOrder : pendingOrders) {
+                try {
+                    pendingOrder.placed(orderService.order(
+                        pendingOrder.getMemberId(), pendingOrder.getItemId(), pendingOrder.getCount()));
+                } catch (RuntimeException orderFailure) {
+                    pendingOrder.failed(orderFailure);
+                }
+            }
+        }
+
+        for (PendingOrder pendingOrder : pendingOrders) {
+            pendingOrder.complete();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import jpabook.jpashop.domain.OrderEvent;
+import jpabook.jpashop.domain.OutboxEvent;
+import jpabook.jpashop.repository.OutboxEventRepository;
+import jpabook.jpashop.repository.shard.OrderShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 아웃박스 전달
+ *
+ * 커밋된 OUTBOX_EVENT 를 발생 순서대로 batchSize 건씩 읽어 OrderEvent 로 발행하고, 전달한 행을 같은 트랜잭션에서 지운다.
+ * 구독자가 실패하면 그 이벤트부터 다음 주기에 다시 전달한다 (최소 한 번 전달). 인스턴스 하나에서만 실행한다.
+ * 실패 횟수는 별도 트랜잭션에서 세고, maxAttempts 번 실패한 이벤트는 OUTBOX_DEAD_LETTER 로 옮겨서 뒤의 이벤트가 막히지 않게 한다.
+ */
+@Service
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    //OUTBOX_DEAD_LETTER.LASTERROR 길이
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Value("${jpashop.outbox.batch-size:100}") int batchSize;
+    @Value("${jpashop.outbox.max-attempts:5}") int maxAttempts;
+
+    @Autowired OutboxEventRepository outboxEventRepository;
+    @Autowired ApplicationEventPublisher eventPublisher;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired OrderShards orderShards;
+    @Autowired MeterRegistry meterRegistry;
+
+    private Counter delivered;           //전달 건수 (처리량)
+    private Counter failures;            //구독자 실패 건수
+    private Counter parked;              //전달을 포기한 건수
+    private DistributionSummary batches; //묶음 크기
+    private Timer lag;                   //이벤트 발생부터 전달까지
+
+    @PostConstruct
+    public void init() {
+        delivered = meterRegistry.counter("jpashop.outbox.delivered");
+        failures = meterRegistry.counter("jpashop.outbox.failures");
+        parked = meterRegistry.counter("jpashop.outbox.parked");
+        batches = DistributionSummary.builder("jpashop.outbox.batch.size")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        lag = Timer.builder("jpashop.outbox.lag")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    /**
+     * 샤드마다 쌓인 이벤트를 모두 전달할 때까지 반복
+     */
+    @Scheduled(fixedDelayString = "${jpashop.outbox.poll-interval-millis:200}")
+    public void relay() {
+
+        for (int shard = 0; shard < orderShards.getShardCount(); shard++) {
+            while (orderShards.inShard(shard, this::relayBatch) == batchSize) {
+                //가득 찬 묶음이면 바로 다음 묶음
+            }
+        }
+    }
+
+    /**
+     * @return 전달한 건수 (구독자가 실패하면 -1)
+     */
+    private int relayBatch() {
+
+        return new TransactionTemplate(transactionManager).execute(status -> {
+
+            List<OutboxEvent> events = outboxEventRepository.findBatch(PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return 0;
+            }
+
+            List<Long> deliveredIds = new ArrayList<>();
+            boolean failed = false;
+            for (OutboxEvent event : events) {
+                try {
+                    eventPublisher.publishEvent(new OrderEvent(event));
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    recordFailure(event, e);
+                    failed = true;
+                    break;
+                }
+                deliveredIds.add(event.getId());
+                lag.record(System.currentTimeMillis() - event.getCreatedDate().getTime(), TimeUnit.MILLISECONDS);
+            }
+
+            if (failed && status.isRollbackOnly()) {
+                //구독자가 트랜잭션을 롤백 전용으로 만들었으면 앞서 전달한 이벤트의 반영도 함께 되돌리고 다음 주기에 다시 전달한다
+                status.setRollbackOnly();
+                return -1;
+            }
+
+            if (!deliveredIds.isEmpty()) {
+                outboxEventRepository.deleteByIds(deliveredIds);
+                delivered.increment(deliveredIds.size());
+                batches.record(deliveredIds.size());
+            }
+            return failed ? -1 : deliveredIds.size();
+        });
+    }
+
+    /**
+     * 실패 횟수를 올리고 maxAttempts 번째 실패면 OUTBOX_DEAD_LETTER 로 옮긴다.
+     * 전달 트랜잭션은 롤백될 수 있으므로 같은 샤드의 새 트랜잭션에서 기록한다.
+     */
+    private void recordFailure(OutboxEvent event, RuntimeException e) {
+
+        int attempts = event.getAttempts() + 1;
+        boolean park = attempts >= maxAttempts;
+
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.execute(status -> {
+            outboxEventRepository.increaseAttempts(event.getId());
+            if (park) {
+                outboxEventRepository.park(event.getId(), errorOf(e));
+                outboxEventRepository.deleteByIds(Collections.singletonList(event.getId()));
+            }
+            return null;
+        });
+
+        if (park) {
+            parked.increment();
+            log.error("아웃박스 이벤트 전달을 {} 번 실패해서 OUTBOX_DEAD_LETTER 로 옮겼습니다. {}", attempts, event, e);
+        } else {
+            log.warn("아웃박스 이벤트 전달 실패 ({}/{}), 다음 주기에 다시 전달합니다. {}", attempts, maxAttempts, event, e);
+        }
+    }
+
+    private static String errorOf(RuntimeException e) {
+        String error = e.toString();
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,67 @@
+package jpabook.jpashop.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 묶음 커밋 대기 주문 (OrderWriteQueue)
+ *
+ * 결과(orderId / failure)는 트랜잭션 안에서 기록하고, future 는 커밋이 끝난 뒤에만 완료한다.
+ */
+class PendingOrder {
+
+    private final Long memberId;
+    private final Long itemId;
+    private final int count;
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+    private Long orderId;
+    private RuntimeException failure;
+
+    PendingOrder(Long memberId, Long itemId, int count) {
+        this.memberId = memberId;
+        this.itemId = itemId;
+        this.count = count;
+    }
+
+    Long getMemberId() {
+        return memberId;
+    }
+
+    Long getItemId() {
+        return itemId;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    CompletableFuture<Long> getFuture() {
+        return future;
+    }
+
+    void placed(Long orderId) {
+        this.orderId = orderId;
+        this.failure = null;
+    }
+
+    void failed(RuntimeException failure) {
+        this.orderId = null;
+        this.failure = failure;
+    }
+
+    /**
+     * 커밋 후 호출
+     */
+    void complete() {
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(orderId);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PendingOrder{memberId=" + memberId + ", itemId=" + itemId + ", count=" + count + '}';
+    }
+}
@@ -0,0 +1,139 @@
+package jpabook.jpashop.service;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import java.util.List;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.QItem;
+import jpabook.jpashop.repository.shard.GlobalReplicator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 상품 가격 일괄 변경
+ *
+ * 상품을 읽지 않고 ID 구간별 벌크 UPDATE(JPAUpdateClause)로 바꾼다. 구간마다 트랜잭션을 나누어 커밋하고,
+ * 커밋한 구간의 상품은 2차 캐시에서 제거한다. 호출한 쪽 영속성 컨텍스트에 오래된 상품이 남지 않도록
+ * 트랜잭션 밖에서만 호출할 수 있다.
+ */
+@Service
+public class RepriceService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @PersistenceContext EntityManager em;
+    @PersistenceUnit EntityManagerFactory emf;
+
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired GlobalReplicator globalReplicator;
+
+    /**
+     * 진행 상황 (구간을 커밋할 때마다)
+     */
+    public interface ProgressListener {
+        void onProgress(long updated, long total);
+    }
+
+    /**
+     * 가격을 percent % 만큼 변경 (원 단위 미만 버림)
+     * @return 변경한 상품 수
+     */
+    @Transactional(propagation = Propagation.NEVER)
+    public long repriceByPercent(int percent, ProgressListener listener) {
+
+        if (percent <= -100) {
+            throw new IllegalArgumentException("가격을 100% 이상 내릴 수 없습니다. percent=" + percent);
+        }
+
+        QItem item = QItem.item;
+        return reprice(item.price.multiply(100 + percent).divide(100), null, listener);
+    }
+
+    /**
+     * 가격을 amount 원 만큼 변경 (가격이 음수가 되는 상품은 건너뛴다)
+     * @return 변경한 상품 수
+     */
+    @Transactional(propagation = Propagation.NEVER)
+    public long repriceByAmount(int amount, ProgressListener listener) {
+
+        QItem item = QItem.item;
+        return reprice(item.price.add(amount), amount < 0 ? item.price.goe(-amount) : null, listener);
+    }
+
+    private long reprice(NumberExpression<Integer> newPrice, Predicate condition, ProgressListener listener) {
+
+        QItem item = QItem.item;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Cache cache = emf.getCache();
+
+        long total = transactionTemplate.execute(status ->
+            new JPAQuery<Item>(em).from(item).where(condition).fetchCount());
+
+        long updated = 0;
+        Long lastId = 0L;
+        while (true) {
+
+            //다음 구간 (ITEM_ID 순서로 CHUNK_SIZE 건)
+            final Long afterId = lastId;
+            Chunk chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = new JPAQuery<Long>(em)
+                    .select(item.id)
+                    .from(item)
+                    .where(item.id.gt(afterId), condition)
+                    .orderBy(item.id.asc())
+                    .limit(CHUNK_SIZE)
+                    .fetch();
+                if (ids.isEmpty()) {
+                    return new Chunk(ids, 0);
+                }
+
+                long count = new JPAUpdateClause(em, item)
+                    .set(item.price, newPrice)
+                    .set(item.version, item.version.add(1))
+                    .where(item.id.between(ids.get(0), ids.get(ids.size() - 1)), condition)
+                    .execute();
+                return new Chunk(ids, count);
+            });
+
+            if (chunk.ids.isEmpty()) {
+                break;
+            }
+
+            //커밋된 구간만 2차 캐시에서 제거
+            for (Long id : chunk.ids) {
+                cache.evict(Item.class, id);
+            }
+            //샤딩을 켜면 주문 샤드의 상품 복사본에도 반영
+            globalReplicator.replicateAfterCommit(GlobalReplicator.Table.ITEM, chunk.ids);
+
+            updated += chunk.updated;
+            lastId = chunk.ids.get(chunk.ids.size() - 1);
+            if (listener != null) {
+                listener.onProgress(updated, total);
+            }
+        }
+        return updated;
+    }
+
+    private static class Chunk {
+
+        private final List<Long> ids;   //구간의 상품 ID
+        private final long updated;     //변경한 상품 수
+
+        Chunk(List<Long> ids, long updated) {
+            this.ids = ids;
+            this.updated = updated;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import jpabook.jpashop.domain.StockDelta;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.StockDeltaRepository;
+import jpabook.jpashop.repository.shard.OrderShards;
+import jpabook.jpashop.repository.shard.ShardContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 메모리 재고 선점 엔진
+ *
+ * 상품별 AtomicInteger 에 재고를 올려두고 CAS 로 선점한다.
+ * 선점량은 주문 트랜잭션에서 STOCK_DELTA 에 INSERT 하고, 주기적으로 상품별로 모아 조건부 UPDATE 로 ITEM 재고 컬럼에
+ * 반영한 뒤 지운다. 커밋된 차감량이 DB 에 남으므로 서버가 죽어도 처음 쓸 때 모두 반영한다(recover).
+ * 재고 원본은 전역 샤드의 ITEM 테이블이다.
+ *
+ * 메모리 재고 = ITEM 재고 - 커밋됐지만 반영하지 않은 차감량(pending) - 진행 중인 트랜잭션의 선점량(inFlight)
+ * 선점은 바로 메모리 재고에서 빼고, 복구(주문 취소)는 트랜잭션이 커밋된 뒤에 메모리 재고에 돌려준다.
+ * 복구를 먼저 돌려주면 그 사이 다른 주문이 가져간 뒤 취소가 롤백될 때 재고보다 많이 팔린다.
+ * 메모리 재고를 다시 적재하는 동안(상품 수정, 반영 충돌) 선점과 트랜잭션 완료가 끼어들지 않도록 상품별 읽기/쓰기 락을 쓴다.
+ * 선점과 완료는 읽기 락이라 서로 막지 않는다.
+ */
+@Service
+public class StockReservationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationEngine.class);
+
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    //같은 상품의 반영이 이 횟수만큼 연속으로 재고 부족이면 0 까지만 차감하고 초과 판매로 기록한다
+    private static final int MAX_FLUSH_CONFLICTS = 5;
+
+    @PersistenceContext EntityManager em;
+
+    @Autowired ItemRepository itemRepository;
+    @Autowired StockDeltaRepository stockDeltaRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired OrderShards orderShards;
+    @Autowired MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<Long, ItemStock> stocks = new ConcurrentHashMap<>();
+
+    //재고 적재와 DB 반영이 서로 끼어들지 않도록 막는다. 선점(CAS)에는 사용하지 않는다.
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    private final Map<Long, Integer> flushConflicts = new HashMap<>();  //상품별 연속 반영 충돌 수 (reconcileLock)
+    private volatile boolean recovered;
+
+    private Counter oversold;   //재고 부족으로 0 까지만 차감한 수량
+
+    @PostConstruct
+    public void init() {
+        oversold = meterRegistry.counter("jpashop.stock.oversold");
+    }
+
+    /**
+     * 재고 선점
+     * 트랜잭션이 커밋되면 DB 반영 대기열에 올리고, 롤백되면 선점한 재고를 되돌린다.
+     */
+    public void reserve(Long itemId, int count) {
+
+        ItemStock stock = lockLoaded(itemId);
+        try {
+            while (true) {
+                int current = stock.available.get();
+                int restStock = current - count;
+                if (restStock < 0) {
+                    throw new NotEnoughStockException("need more stock");
+                }
+                if (stock.available.compareAndSet(current, restStock)) {
+                    break;
+                }
+            }
+            stock.inFlight.addAndGet(count);
+        } finally {
+            stock.lock.readLock().unlock();
+        }
+        recordDelta(itemId, stock, count);
+    }
+
+    /**
+     * 재고 복구
+     * 트랜잭션이 커밋되면 메모리 재고에 돌려주고 DB 반영 대기열에 올린다. 롤백되면 아무것도 바꾸지 않는다.
+     */
+    public void release(Long itemId, int count) {
+
+        //적재만 확인하고 메모리 재고는 건드리지 않는다 (complete)
+        ItemStock stock = lockLoaded(itemId);
+        stock.lock.readLock().unlock();
+        recordDelta(itemId, stock, -count);
+    }
+
+    /**
+     * 상품 재고가 엔진 밖에서 바뀐 경우(상품 수정 등) 커밋 후 메모리 재고를 다시 적재하게 한다.
+     */
+    public void reconcile(final Long itemId) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(itemId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(itemId);
+            }
+        });
+    }
+
+    /**
+     * 대기 중인 차감량을 DB 에 반영
+     */
+    @PreDestroy
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MILLIS)
+    public void flush() {
+
+        reconcileLock.lock();
+        try {
+            recover();
+            flushAll(false);
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * 지난 실행에서 반영하지 못한 차감량을 모두 반영 (처음 선점하거나 반영하기 전에 한 번)
+     * 이 차감량은 메모리 pending 에 없으므로 이번 실행의 변화량이 생기기 전에 끝내야 한다. 재고 부족이면 바로 0 까지만 차감한다.
+     */
+    private void recover() {
+
+        if (recovered) {
+            return;
+        }
+        reconcileLock.lock();
+        try {
+            if (!recovered) {
+                flushAll(true);
+                recovered = true;
+            }
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void flushAll(boolean recovering) {
+        for (int shard = 0; shard < orderShards.getShardCount(); shard++) {
+            while (flushShard(shard, recovering) == FLUSH_BATCH_SIZE) {
+                //가득 반영한 묶음이면 바로 다음 묶음
+            }
+        }
+    }
+
+    /**
+     * 샤드 하나의 변화량 한 묶음을 반영
+     * @return 반영한 변화량 수
+     */
+    private int flushShard(int shard, boolean recovering) {
+
+        if (shard == OrderShards.GLOBAL_SHARD) {
+            //변화량과 ITEM 이 같은 데이터베이스 - 한 트랜잭션에서 반영하고 지운다
+            Applied applied = inGlobalShard(() -> {
+                Applied result = apply(stockDeltaRepository.findBatch(PageRequest.of(0, FLUSH_BATCH_SIZE)),
+                    recovering);
+                if (!result.deltaIds.isEmpty()) {
+                    stockDeltaRepository.deleteByIds(result.deltaIds);
+                }
+                return result;
+            });
+            return afterApplied(applied, recovering);
+        }
+
+        //다른 샤드 - 전역 샤드에 반영 기록(STOCK_FLUSH)을 같이 남기고, 샤드에서 지운 뒤 기록을 지운다
+        finishFlush(shard);
+        List<StockDelta> deltas = orderShards.inShard(shard,
+            () -> stockDeltaRepository.findBatch(PageRequest.of(0, FLUSH_BATCH_SIZE)));
+        Applied applied = inGlobalShard(() -> {
+            Applied result = apply(deltas, recovering);
+            if (!result.deltaIds.isEmpty()) {
+                stockDeltaRepository.insertFlush(shard, result.deltaIds.stream()
+                    .map(String::valueOf).collect(Collectors.joining(",")));
+            }
+            return result;
+        });
+        //ITEM 반영이 커밋됐으므로 샤드에서 지우기 전에 pending 부터 맞춘다
+        int count = afterApplied(applied, recovering);
+        finishFlush(shard);
+        return count;
+    }
+
+    /**
+     * 반영 기록이 남아 있으면 그 변화량은 이미 ITEM 에 반영됐으므로 샤드에서 지우고 기록을 지운다 (중간에 죽은 경우 포함)
+     */
+    private void finishFlush(int shard) {
+
+        String deltaIds = inGlobalShard(() -> stockDeltaRepository.findFlush(shard));
+        if (deltaIds == null) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        for (String id : deltaIds.split(",")) {
+            ids.add(Long.valueOf(id));
+        }
+        orderShards.inShard(shard, () -> stockDeltaRepository.deleteByIds(ids));
+        inGlobalShard(() -> stockDeltaRepository.deleteFlush(shard));
+    }
+
+    /**
+     * 상품별로 모아 조건부 UPDATE (전역 샤드 트랜잭션 안에서)
+     * 재고가 부족한 상품의 변화량은 남겨서 다음 주기에 다시 반영하고, MAX_FLUSH_CONFLICTS 번째(복구 중이면 바로)에는
+     * 0 까지만 차감하고 초과 판매로 기록한다.
+     */
+    private Applied apply(List<StockDelta> deltas, boolean recovering) {
+
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        Map<Long, List<Long>> deltaIds = new HashMap<>();
+        for (StockDelta delta : deltas) {
+            quantities.merge(delta.getItemId(), delta.getQuantity(), Integer::sum);
+            deltaIds.computeIfAbsent(delta.getItemId(), id -> new ArrayList<>()).add(delta.getId());
+        }
+
+        Applied applied = new Applied();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Long itemId = entry.getKey();
+            int quantity = entry.getValue();
+
+            if (quantity != 0 && itemRepository.decreaseStock(itemId, quantity) == 0) {
+                //DB 재고가 엔진 밖에서 줄어든 상품: 메모리 재고를 다시 적재한다
+                evict(itemId);
+                int conflicts = flushConflicts.merge(itemId, 1, Integer::sum);
+                if (!recovering && conflicts < MAX_FLUSH_CONFLICTS) {
+                    log.warn("재고 반영 충돌 ({}/{}), 다음 주기에 다시 반영합니다. itemId={}, quantity={}",
+                        conflicts, MAX_FLUSH_CONFLICTS, itemId, quantity);
+                    continue;
+                }
+                Integer stockQuantity = itemRepository.findStockQuantityById(itemId);
+                itemRepository.forceDecreaseStock(itemId, quantity);
+                int shortage = quantity - (stockQuantity == null ? 0 : Math.max(stockQuantity, 0));
+                if (shortage > 0) {
+                    oversold.increment(shortage);
+                }
+                log.error("재고보다 많이 팔렸습니다. 0 까지만 차감합니다. itemId={}, quantity={}, stockQuantity={}",
+                    itemId, quantity, stockQuantity);
+            }
+
+            flushConflicts.remove(itemId);
+            applied.quantities.put(itemId, quantity);
+            applied.deltaIds.addAll(deltaIds.get(itemId));
+        }
+        return applied;
+    }
+
+    /**
+     * 커밋된 반영만큼 pending 에서 뺀다 (지난 실행의 변화량은 pending 에 없다)
+     */
+    private int afterApplied(Applied applied, boolean recovering) {
+
+        if (!recovering) {
+            applied.quantities.forEach((itemId, quantity) -> {
+                ItemStock stock = stocks.get(itemId);
+                if (stock != null) {
+                    stock.pending.addAndGet(-quantity);
+                }
+            });
+        }
+        return applied.deltaIds.size();
+    }
+
+    /**
+     * 적재된 상품 재고를 읽기 락을 잡은 채로 돌려준다 (호출한 쪽에서 푼다)
+     */
+    private ItemStock lockLoaded(Long itemId) {
+
+        recover();
+
+        ItemStock stock = stocks.computeIfAbsent(itemId, id -> new ItemStock());
+        while (true) {
+            stock.lock.readLock().lock();
+            if (stock.loaded) {
+                return stock;
+            }
+            stock.lock.readLock().unlock();
+            load(itemId, stock);
+        }
+    }
+
+    private void load(Long itemId, ItemStock stock) {
+
+        reconcileLock.lock();
+        try {
+            stock.lock.writeLock().lock();
+            try {
+                if (stock.loaded) {
+                    return;
+                }
+                //주문 트랜잭션이 다른 샤드에 있어도 복제본이 아닌 원본 재고를 읽는다
+                Integer stockQuantity = orderShards.inShard(OrderShards.GLOBAL_SHARD,
+                    () -> itemRepository.findStockQuantityById(itemId));
+                if (stockQuantity == null) {
+                    throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + itemId);
+                }
+                stock.available.set(stockQuantity - stock.pending.get() - stock.inFlight.get());
+                stock.loaded = true;
+            } finally {
+                stock.lock.writeLock().unlock();
+            }
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * 변화량을 현재 트랜잭션에 기록하고 완료되면 메모리 재고에 반영한다 (complete)
+     */
+    private void recordDelta(final Long itemId, final ItemStock stock, final int delta) {
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            try {
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    em.persist(new StockDelta(itemId, delta));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                complete(stock, delta, false);
+                throw e;
+            }
+            complete(stock, delta, true);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                complete(stock, delta, status == STATUS_COMMITTED);
+            }
+        });
+        em.persist(new StockDelta(itemId, delta));
+    }
+
+    /**
+     * 선점(delta > 0)은 inFlight 에서 pending(커밋) 또는 메모리 재고(롤백)로 옮긴다.
+     * 복구(delta < 0)는 커밋됐을 때만 pending 에 올리고 메모리 재고에 돌려준다.
+     */
+    private void complete(ItemStock stock, int delta, boolean committed) {
+
+        stock.lock.readLock().lock();
+        try {
+            if (delta > 0) {
+                stock.inFlight.addAndGet(-delta);
+                if (committed) {
+                    stock.pending.addAndGet(delta);
+                } else {
+                    //롤백 - 선점한 재고를 되돌린다
+                    stock.available.addAndGet(delta);
+                }
+            } else if (committed) {
+                stock.pending.addAndGet(delta);
+                stock.available.addAndGet(-delta);
+            }
+        } finally {
+            stock.lock.readLock().unlock();
+        }
+    }
+
+    private void evict(Long itemId) {
+
+        ItemStock stock = stocks.get(itemId);
+        if (stock == null) {
+            return;
+        }
+        stock.lock.writeLock().lock();
+        try {
+            stock.loaded = false;
+        } finally {
+            stock.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 전역 샤드의 새 트랜잭션 (주문 트랜잭션 안에서 불려도 섞이지 않는다)
+     */
+    private <T> T inGlobalShard(Supplier<T> work) {
+
+        Integer previous = ShardContext.set(OrderShards.GLOBAL_SHARD);
+        try {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            return template.execute(status -> work.get());
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    private static class ItemStock {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final AtomicInteger available = new AtomicInteger();   //메모리 재고
+        private final AtomicInteger pending = new AtomicInteger();     //커밋됐지만 ITEM 에 반영하지 않은 차감량
+        private final AtomicInteger inFlight = new AtomicInteger();    //진행 중인 트랜잭션의 선점량
+        private volatile boolean loaded;                               //false 면 다음 선점 때 다시 적재
+    }
+
+    private static class Applied {
+
+        private final Map<Long, Integer> quantities = new HashMap<>();  //상품별 반영한 차감량
+        private final List<Long> deltaIds = new ArrayList<>();          //반영한 변화량 ID
+    }
+}
@@ -1,25 +1,48 @@
 package jpabook.jpashop.web;
 
+import java.time.Instant;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @Controller
 public class HomeController {
 
+    private static final long WAIT_MILLIS = 1000;
+
+    @Autowired TaskScheduler delayedResponseScheduler;
+
     @RequestMapping("/")
     public String home(Model model) {
 
         return "home";
     }
 
+    /**
+     * 1초 뒤 응답 - 기다리는 동안 요청 스레드를 붙잡지 않는다.
+     */
     @ResponseBody
     @RequestMapping("/wait")
-    public String wait(Model model) throws InterruptedException {
+    public DeferredResult<String> wait(Model model) {
+
+        DeferredResult<String> result = new DeferredResult<>();
+        delayedResponseScheduler.schedule(() -> result.setResult("response"), Instant.now().plusMillis(WAIT_MILLIS));
 
-        Thread.sleep(1000);
+        return result;
+    }
+
+    /**
+     * 1초 뒤 응답 - 요청 스레드에서 기다린다 (비동기 /wait 와 비교하는 부하 테스트용, WaitBenchmark)
+     */
+    @ResponseBody
+    @RequestMapping("/wait/blocking")
+    public String waitBlocking(Model model) throws InterruptedException {
 
+        Thread.sleep(WAIT_MILLIS);
         return "response";
     }
 
@@ -1,12 +1,17 @@
 package jpabook.jpashop.web;
 
+import java.util.Date;
 import java.util.List;
+import jpabook.jpashop.domain.ItemSalesDto;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.ItemSalesService;
 import jpabook.jpashop.service.ItemService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.support.SessionStatus;
@@ -16,6 +21,7 @@ import org.springframework.web.bind.support.SessionStatus;
 public class ItemController {
 
     @Autowired ItemService itemService;
+    @Autowired ItemSalesService itemSalesService;
 
     @InitBinder
     public void setAllowedFields(WebDataBinder dataBinder) {
@@ -57,14 +63,36 @@ public class ItemController {
     }
 
     /**
-     * 상품 목록
+     * 상품 목록 (name 이 있으면 이름에 name 이 들어 있는 상품만)
      */
     @RequestMapping(value = "/items", method = RequestMethod.GET)
-    public String list(Model model) {
+    public String list(@RequestParam(value = "name", required = false) String name, Model model) {
 
-        List<Item> items = itemService.findItems();
+        List<Item> items = StringUtils.hasText(name) ? itemService.findItemsByName(name) : itemService.findItems();
         model.addAttribute("items", items);
         return "items/itemList";
     }
 
+    /**
+     * 상품별 판매 합계 (from 포함, to 제외)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/items/sales", method = RequestMethod.GET)
+    public List<ItemSalesDto> salesByItem(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+        @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+
+        return itemSalesService.findSalesByItem(from, to);
+    }
+
+    /**
+     * 일별 판매 합계 (from 포함, to 제외)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/items/sales/daily", method = RequestMethod.GET)
+    public List<ItemSalesDto> salesByDay(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+        @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+
+        return itemSalesService.findSalesByDay(from, to);
+    }
+
 }
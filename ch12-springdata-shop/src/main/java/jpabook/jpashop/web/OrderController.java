@@ -1,17 +1,29 @@
 package jpabook.jpashop.web;
 
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderCursor;
+import jpabook.jpashop.domain.OrderLine;
+import jpabook.jpashop.domain.OrderListDto;
 import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
 import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.service.OrderWriteQueue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Controller
 public class OrderController {
@@ -19,6 +31,8 @@ public class OrderController {
     @Autowired OrderService orderService;
     @Autowired MemberService memberService;
     @Autowired ItemService itemService;
+    @Autowired AsyncTaskExecutor asyncTaskExecutor;
+    @Autowired(required = false) OrderWriteQueue orderWriteQueue;
 
     @RequestMapping(value = "/order", method = RequestMethod.GET)
     public String createForm(Model model) {
@@ -32,11 +46,27 @@ public class OrderController {
         return "order/orderForm";
     }
 
+    /**
+     * 주문 (묶음 커밋을 켜면 요청 스레드를 바로 돌려주고 커밋되면 응답한다)
+     */
     @RequestMapping(value = "/order", method = RequestMethod.POST)
-    public String order(@RequestParam("memberId") Long memberId, @RequestParam("itemId") Long itemId, @RequestParam("count") int count) {
+    public CompletableFuture<String> order(@RequestParam("memberId") Long memberId, @RequestParam("itemId") Long itemId, @RequestParam("count") int count) {
 
+        if (orderWriteQueue != null) {
+            return orderWriteQueue.submit(memberId, itemId, count).thenApply(orderId -> "redirect:/orders");
+        }
         orderService.order(memberId, itemId, count);
-        return "redirect:/orders";
+        return CompletableFuture.completedFuture("redirect:/orders");
+    }
+
+    /**
+     * 대량 주문
+     */
+    @ResponseBody
+    @RequestMapping(value = "/orders/bulk", method = RequestMethod.POST)
+    public CompletableFuture<List<Long>> orderAll(@RequestBody List<OrderLine> orderLines) {
+
+        return CompletableFuture.supplyAsync(() -> orderService.orderAll(orderLines), asyncTaskExecutor);
     }
 
     @RequestMapping(value = "/orders", method = RequestMethod.GET)
@@ -48,6 +78,47 @@ public class OrderController {
         return "order/orderList";
     }
 
+    /**
+     * 주문 목록 (DTO)
+     */
+    @ResponseBody
+    @RequestMapping(value = "/orders/rows", method = RequestMethod.GET)
+    public List<OrderListDto> orderRows(@ModelAttribute("orderSearch") OrderSearch orderSearch) {
+
+        return orderService.findOrderList(orderSearch);
+    }
+
+    /**
+     * 주문 목록 (키셋 페이징)
+     */
+    @RequestMapping(value = "/orders/page", method = RequestMethod.GET)
+    public String orderPage(@ModelAttribute("orderSearch") OrderSearch orderSearch, OrderCursor cursor,
+        @RequestParam(value = "size", defaultValue = "20") int size, Model model) {
+
+        List<Order> orders = orderService.findOrders(orderSearch, cursor, size);
+        model.addAttribute("orders", orders);
+        if (orders.size() == size) {
+            model.addAttribute("nextCursor", OrderCursor.of(orders.get(orders.size() - 1)));
+        }
+
+        return "order/orderList";
+    }
+
+    /**
+     * 주문 내역 CSV 내보내기 (비동기 실행기에서 응답 스트림에 바로 쓴다)
+     */
+    @RequestMapping(value = "/orders/export", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportOrders(@ModelAttribute("orderSearch") OrderSearch orderSearch) {
+
+        StreamingResponseBody body = out ->
+            orderService.exportOrders(orderSearch, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.csv\"")
+            .body(body);
+    }
+
     @RequestMapping(value = "/orders/{orderId}/cancel")
     public String processCancelBuy(@PathVariable("orderId") Long orderId) {
 
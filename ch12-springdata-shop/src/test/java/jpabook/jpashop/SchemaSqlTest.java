@@ -0,0 +1,79 @@
+package jpabook.jpashop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * schema.sql 의 기존 데이터 채우기가 맞게 도는지 (H2, 채우기 전 테이블 모양으로 만들고 해당 구간만 실행)
+ */
+class SchemaSqlTest {
+
+    @Test
+    void 주문_총액_채우기는_INT_를_넘어도_맞게_더한다() throws Exception {
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:schema-total-price");
+             Statement statement = connection.createStatement()) {
+
+            statement.execute("CREATE TABLE ORDERS (ORDER_ID BIGINT PRIMARY KEY, STATUS VARCHAR(255))");
+            statement.execute("CREATE TABLE ORDER_ITEM (ORDER_ITEM_ID BIGINT PRIMARY KEY, ORDER_ID BIGINT,"
+                + " ORDERPRICE INT NOT NULL, COUNT INT NOT NULL)");
+            statement.execute("INSERT INTO ORDERS VALUES (1, 'ORDER'), (2, 'CANCEL'), (3, 'ORDER')");
+            statement.execute("INSERT INTO ORDER_ITEM VALUES"
+                + " (1, 1, 2000000000, 2), (2, 1, 1000, 3),"  //INT 를 넘는 합계
+                + " (3, 2, 500, 4)");                         //3 번 주문은 주문상품 없음
+
+            for (String sql : section("-- 주문 총액")) {
+                statement.execute(sql);
+            }
+
+            try (ResultSet resultSet = statement.executeQuery("SELECT TOTALPRICE FROM ORDERS ORDER BY ORDER_ID")) {
+                assertTrue(resultSet.next());
+                assertEquals(4_000_003_000L, resultSet.getLong(1));
+                assertTrue(resultSet.next());
+                assertEquals(2000L, resultSet.getLong(1));  //취소한 주문도 총액은 그대로
+                assertTrue(resultSet.next());
+                assertEquals(0L, resultSet.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * heading 주석으로 시작하는 구간(빈 줄까지)의 SQL 문
+     */
+    private List<String> section(String heading) throws Exception {
+
+        List<String> lines = Files.readAllLines(Paths.get("schema.sql"), StandardCharsets.UTF_8);
+        StringBuilder sql = new StringBuilder();
+        boolean inSection = false;
+        for (String line : lines) {
+            if (line.startsWith(heading)) {
+                inSection = true;
+            } else if (inSection && line.trim().isEmpty()) {
+                break;
+            }
+            if (inSection && !line.startsWith("--")) {
+                sql.append(line).append('\n');
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String statement : sql.toString().split(";")) {
+            if (!statement.trim().isEmpty()) {
+                statements.add(statement.trim());
+            }
+        }
+        assertTrue(!statements.isEmpty(), heading + " 구간이 schema.sql 에 없습니다.");
+        return statements;
+    }
+}
@@ -0,0 +1,56 @@
+package jpabook.jpashop.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.TimeZone;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 판매일 자르기 - 서버 시간대와 상관없이 SALES_ZONE(한국 시간) 기준 날짜
+ */
+class ItemSalesDeltaTest {
+
+    //한국 시간 2026-10-19 01:00, UTC 로는 아직 18 일
+    private static final Date AFTER_MIDNIGHT_KST = Date.from(Instant.parse("2026-10-18T16:00:00Z"));
+    //한국 시간 2026-10-18 23:59
+    private static final Date BEFORE_MIDNIGHT_KST = Date.from(Instant.parse("2026-10-18T14:59:00Z"));
+
+    @Test
+    void 서버_시간대와_상관없이_한국_시간_날짜() {
+
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            for (String zone : new String[]{"UTC", "America/Los_Angeles", "Asia/Seoul"}) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zone));
+
+                assertEquals(LocalDate.of(2026, 10, 19), dateColumnOf(ItemSalesDelta.dayOf(AFTER_MIDNIGHT_KST)), zone);
+                assertEquals(LocalDate.of(2026, 10, 18), dateColumnOf(ItemSalesDelta.dayOf(BEFORE_MIDNIGHT_KST)), zone);
+            }
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    @Test
+    void 같은_날_주문과_취소는_같은_키() {
+
+        ItemSalesDelta ordered = ItemSalesDelta.ordered(1L, AFTER_MIDNIGHT_KST, 1000, 2);
+        ItemSalesDelta canceled = ItemSalesDelta.canceled(1L, new Date(AFTER_MIDNIGHT_KST.getTime() + 60_000), 1000, 1);
+
+        assertEquals(ordered.getSalesId(), canceled.getSalesId());
+        assertEquals(2000L, ordered.getRevenue());
+        assertEquals(1000L, canceled.getCanceledRevenue());
+        //이미 자른 날짜는 그대로
+        assertEquals(ordered.getSalesDate(), ItemSalesDelta.dayOf(ordered.getSalesDate()));
+    }
+
+    /**
+     * DATE 컬럼에 저장되는 날짜 (JDBC 는 JVM 기본 시간대로 읽는다)
+     */
+    private LocalDate dateColumnOf(Date day) {
+        return new java.sql.Date(day.getTime()).toLocalDate();
+    }
+}
@@ -0,0 +1,50 @@
+package jpabook.jpashop.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 일 판매 집계 키 비교 - DB 에서 읽은 java.sql.Date 와 같은 날짜, 빈 키
+ */
+class ItemSalesIdTest {
+
+    @Test
+    void DB_에서_읽은_날짜와_같은_키() {
+
+        Date day = ItemSalesDelta.dayOf(new Date());
+        ItemSalesId created = new ItemSalesId(1L, day);
+        ItemSalesId loaded = new ItemSalesId(1L, new java.sql.Date(day.getTime()));
+
+        assertEquals(created, loaded);
+        assertEquals(created.hashCode(), loaded.hashCode());
+        Map<ItemSalesId, String> dailies = new HashMap<>();
+        dailies.put(loaded, "daily");
+        assertEquals("daily", dailies.get(created));
+
+        assertNotEquals(created, new ItemSalesId(2L, day));
+        assertNotEquals(created, new ItemSalesId(1L, new Date(day.getTime() - 24 * 60 * 60 * 1000L)));
+    }
+
+    @Test
+    void 기본_생성자로_만든_키도_비교할_수_있다() {
+
+        ItemSalesId empty = new ItemSalesId();
+
+        assertEquals(empty, new ItemSalesId());
+        assertEquals(empty.hashCode(), new ItemSalesId().hashCode());
+        assertNotEquals(empty, new ItemSalesId(1L, new Date()));
+        assertNotEquals(new ItemSalesId(1L, new Date()), empty);
+
+        Set<ItemSalesId> salesIds = new HashSet<>();
+        salesIds.add(empty);
+        assertTrue(salesIds.contains(new ItemSalesId()));
+    }
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import jpabook.jpashop.domain.item.Book;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 주문 총액(totalPrice)을 주문상품을 추가할 때 누적하는지
+ */
+class OrderTest {
+
+    @Test
+    void 주문상품을_추가할_때마다_총액을_더한다() {
+
+        Book book = createBook();
+        Order order = Order.createOrder(createMember(), new Delivery(new Address("서울", "강가", "123-123")),
+            OrderItem.createReservedOrderItem(book, 1000, 3));
+        assertEquals(3000L, order.getTotalPrice());
+
+        //INT 를 넘는 총액
+        order.addOrderItem(OrderItem.createReservedOrderItem(book, 2_000_000_000, 2));
+        assertEquals(4_000_003_000L, order.getTotalPrice());
+    }
+
+    @Test
+    void 취소해도_총액은_그대로() {
+
+        Order order = Order.createOrder(createMember(), new Delivery(new Address("서울", "강가", "123-123")),
+            OrderItem.createReservedOrderItem(createBook(), 1000, 3));
+
+        order.cancelWithoutRestock();
+
+        assertEquals(OrderStatus.CANCEL, order.getStatus());
+        assertEquals(3000L, order.getTotalPrice());
+        assertThrows(IllegalStateException.class, order::cancelWithoutRestock);
+    }
+
+    private Member createMember() {
+
+        Member member = new Member();
+        member.setName("회원1");
+        return member;
+    }
+
+    private Book createBook() {
+
+        Book book = new Book();
+        book.setName("시골개발자의 JPA 책");
+        book.setPrice(1000);
+        return book;
+    }
+}
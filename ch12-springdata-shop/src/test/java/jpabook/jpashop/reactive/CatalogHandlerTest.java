@@ -0,0 +1,57 @@
+package jpabook.jpashop.reactive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import reactor.netty.DisposableServer;
+
+/**
+ * 리액티브 조회를 켜도 JPA(쓰기)는 그대로 뜨고, R2DBC 로 JPA 가 쓴 데이터를 읽는지
+ */
+@SpringBootTest(properties = {
+    "jpashop.search.index-dir=",
+    "jpashop.reactive.enabled=true",
+    "jpashop.reactive.port=0"})
+@AutoConfigureTestDatabase
+class CatalogHandlerTest {
+
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired DisposableServer reactiveServer;
+
+    @Test
+    void 리액티브_조회를_켜도_JPA_트랜잭션_매니저를_쓴다() {
+        assertTrue(transactionManager instanceof JpaTransactionManager);
+    }
+
+    @Test
+    void JPA_로_저장한_상품과_주문을_읽는다() throws Exception {
+
+        //MockCreateService 가 시작할 때 JPA 로 저장한 데이터
+        HttpResponse<String> items = get("/items");
+        assertEquals(200, items.statusCode());
+        assertTrue(items.body().contains("시골개발자의 JPA 책"));
+        assertTrue(items.body().contains("토비의 봄"));
+
+        HttpResponse<String> orders = get("/orders?memberName=회원1");
+        assertEquals(200, orders.statusCode());
+        assertTrue(orders.body().contains("시골개발자의 JPA 책"));
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + reactiveServer.port() + path))
+            .GET()
+            .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
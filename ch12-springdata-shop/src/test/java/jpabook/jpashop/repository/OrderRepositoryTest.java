@@ -0,0 +1,86 @@
+package jpabook.jpashop.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderTotalDto;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+/**
+ * 상태별 주문 합계(sumTotalPriceByStatus) - 취소한 주문의 총액은 CANCEL 합계에만 들어가는지
+ */
+@DataJpaTest
+class OrderRepositoryTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Autowired EntityManager em;
+    @Autowired OrderRepository orderRepository;
+
+    @Test
+    void 취소한_주문은_CANCEL_합계에만_들어간다() {
+
+        Date now = new Date();
+        Member member = createMember();
+        Book book = createBook();
+
+        createOrder(member, book, 1000, 1, now);
+        createOrder(member, book, 2_000_000_000, 2, now);
+        createOrder(member, book, 3000, 1, now).cancelWithoutRestock();
+        //기간 밖
+        createOrder(member, book, 5000, 1, new Date(now.getTime() - 2 * DAY));
+        em.flush();
+        em.clear();
+
+        Map<OrderStatus, OrderTotalDto> totals = orderRepository
+            .sumTotalPriceByStatus(new Date(now.getTime() - DAY), new Date(now.getTime() + DAY)).stream()
+            .collect(Collectors.toMap(OrderTotalDto::getStatus, Function.identity()));
+
+        assertEquals(2, totals.size());
+        assertEquals(2L, totals.get(OrderStatus.ORDER).getOrderCount());
+        assertEquals(4_000_001_000L, totals.get(OrderStatus.ORDER).getTotalPrice());
+        assertEquals(1L, totals.get(OrderStatus.CANCEL).getOrderCount());
+        assertEquals(3000L, totals.get(OrderStatus.CANCEL).getTotalPrice());
+    }
+
+    private Order createOrder(Member member, Book book, int price, int count, Date orderDate) {
+
+        Order order = Order.createOrder(member, new Delivery(member.getAddress()),
+            OrderItem.createReservedOrderItem(book, price, count));
+        order.setOrderDate(orderDate);
+        em.persist(order);
+        return order;
+    }
+
+    private Member createMember() {
+
+        Member member = new Member();
+        member.setName("합계회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    private Book createBook() {
+
+        Book book = new Book();
+        book.setName("시골개발자의 JPA 책");
+        book.setPrice(1000);
+        book.setStockQuantity(100);
+        em.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,151 @@
+package jpabook.jpashop.repository.custom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.OrderRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+/**
+ * 주문 검색(searchWithItems)이 주문 수와 상관없이 정해진 수의 SQL 만 실행하는지 (Hibernate Statistics)
+ * 캐시한 JPQL 검색이 QueryDSL, Specification 검색과 같은 주문을 찾는지
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderRepositoryImplTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderRepository orderRepository;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void 주문_페이지는_쿼리_두_번() {
+
+        Member member = createMember("회원1");
+        createOrders(member, 3);
+        em.flush();
+        em.clear();
+        statistics.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberId(member.getId());
+        List<Order> orders = orderRepository.searchWithItems(orderSearch);
+        touch(orders);
+
+        assertEquals(3, orders.size());
+        //1. 주문 + 회원 + 배송, 2. 주문상품 + 상품
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void 주문상품은_묶음마다_쿼리_한_번() {
+
+        Member member = createMember("회원2");
+        int orderCount = OrderRepositoryImpl.FETCH_ITEMS_CHUNK_SIZE + 1;
+        createOrders(member, orderCount);
+        em.flush();
+        em.clear();
+        statistics.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberId(member.getId());
+        List<Order> orders = orderRepository.searchWithItems(orderSearch);
+        touch(orders);
+
+        assertEquals(orderCount, orders.size());
+        //주문 쿼리 한 번 + 주문상품 IN 절 두 묶음
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void 캐시한_JPQL_과_QueryDSL_과_Specification_검색_결과가_같다() {
+
+        Member member = createMember("검색회원A");
+        createOrders(member, 3);
+        createOrders(createMember("검색회원B"), 2);
+        em.flush();
+        Order canceled = orderRepository.searchQuerydsl(new OrderSearch()).stream()
+            .filter(order -> order.getMember() == member)
+            .findFirst().get();
+        canceled.cancelWithoutRestock();
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("회원A");
+        orderSearch.setOrderStatus(OrderStatus.ORDER);
+
+        Set<Long> jpql = ids(orderRepository.search(orderSearch));
+        assertEquals(2, jpql.size());
+        assertEquals(jpql, ids(orderRepository.searchQuerydsl(orderSearch)));
+        assertEquals(jpql, ids(orderRepository.findAll(orderSearch.toSpecification())));
+    }
+
+    private Member createMember(String name) {
+
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    private void createOrders(Member member, int count) {
+
+        Item book1 = createBook("시골개발자의 JPA 책", 20000);
+        Item book2 = createBook("토비의 봄", 40000);
+        for (int i = 0; i < count; i++) {
+            em.persist(Order.createOrder(member, new Delivery(member.getAddress()),
+                OrderItem.createReservedOrderItem(book1, book1.getPrice(), 1),
+                OrderItem.createReservedOrderItem(book2, book2.getPrice(), 2)));
+        }
+    }
+
+    private Item createBook(String name, int price) {
+
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(10000);
+        em.persist(book);
+        return book;
+    }
+
+    private Set<Long> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toSet());
+    }
+
+    //화면에서 쓰는 연관 엔티티를 모두 읽는다 (지연 로딩 쿼리가 나가면 SQL 수가 늘어난다)
+    private void touch(List<Order> orders) {
+
+        for (Order order : orders) {
+            order.getMember().getName();
+            order.getDelivery().getStatus();
+            for (OrderItem orderItem : order.getOrderItems()) {
+                orderItem.getItem().getName();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package jpabook.jpashop.repository.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import jpabook.jpashop.config.ShardRoutingDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * 샤드 라우팅 - 주문 ID 로 샤드 찾기, 회원별 묶기, 샤드 결과 병합
+ */
+class OrderShardsTest {
+
+    private static final Comparator<Long> NEWEST_FIRST = Comparator.reverseOrder();
+
+    @Test
+    void 주문_ID_의_상위_비트가_샤드() {
+
+        OrderShards orderShards = shards(4);
+
+        assertEquals(0, orderShards.shardOfOrder(1L));
+        //schema.sql 의 1 번 샤드 시퀀스 시작값
+        assertEquals(1, orderShards.shardOfOrder(1099511627777L));
+        assertEquals(2, orderShards.shardOfOrder((2L << OrderShards.SHARD_ID_BITS) + 1));
+        //3 번 샤드 구간의 마지막 ID
+        assertEquals(3, orderShards.shardOfOrder((4L << OrderShards.SHARD_ID_BITS) - 1));
+        assertThrows(IllegalArgumentException.class,
+            () -> orderShards.shardOfOrder(4L << OrderShards.SHARD_ID_BITS));
+    }
+
+    @Test
+    void 샤딩을_끄면_전역_샤드_하나() {
+
+        OrderShards orderShards = new OrderShards();
+
+        assertEquals(0, orderShards.shardOfOrder(1L));
+        assertEquals(0, orderShards.shardOfMember(12345L));
+        assertThrows(IllegalArgumentException.class,
+            () -> orderShards.shardOfOrder(1L << OrderShards.SHARD_ID_BITS));
+        assertEquals(Collections.singleton(0),
+            orderShards.groupByMember(Arrays.asList(1L, 2L, 3L), memberId -> memberId).keySet());
+    }
+
+    @Test
+    void 회원의_샤드별로_입력_순서대로_묶는다() {
+
+        OrderShards orderShards = shards(4);
+        List<Long> memberIds = new ArrayList<>();
+        for (long memberId = 1; memberId <= 100; memberId++) {
+            memberIds.add(memberId);
+            memberIds.add(memberId);    //같은 회원은 같은 샤드
+        }
+
+        Map<Integer, List<Long>> groups = orderShards.groupByMember(memberIds, memberId -> memberId);
+
+        assertEquals(4, groups.size());     //연속된 ID 가 모든 샤드로 퍼진다
+        groups.forEach((shard, members) -> {
+            for (Long memberId : members) {
+                assertEquals(shard.intValue(), orderShards.shardOfMember(memberId));
+            }
+            //입력 순서 유지
+            assertEquals(members.stream().sorted().collect(Collectors.toList()), members);
+        });
+        assertEquals(memberIds.size(), groups.values().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void 정렬된_샤드_결과를_limit_건까지_병합() {
+
+        List<List<Long>> shardResults = Arrays.asList(
+            Arrays.asList(90L, 60L, 30L),
+            Collections.<Long>emptyList(),
+            Arrays.asList(80L, 70L, 20L, 10L),
+            Arrays.asList(50L, 40L));
+
+        assertEquals(Arrays.asList(90L, 80L, 70L, 60L),
+            OrderShards.merge(shardResults, NEWEST_FIRST, 4));
+        assertEquals(Arrays.asList(90L, 80L, 70L, 60L, 50L, 40L, 30L, 20L, 10L),
+            OrderShards.merge(shardResults, NEWEST_FIRST, Integer.MAX_VALUE));
+        assertEquals(Arrays.asList(90L, 60L),
+            OrderShards.merge(Collections.singletonList(shardResults.get(0)), NEWEST_FIRST, 2));
+    }
+
+    @Test
+    void 키셋_페이지를_이어_병합하면_전체_정렬_순서() {
+
+        List<List<Long>> shards = Arrays.asList(
+            Arrays.asList(95L, 61L, 60L, 12L),
+            Arrays.asList(99L, 98L, 3L),
+            Arrays.asList(70L, 69L, 40L, 2L, 1L));
+        List<Long> expected = shards.stream().flatMap(List::stream)
+            .sorted(NEWEST_FIRST).collect(Collectors.toList());
+
+        //샤드마다 커서 다음 size 건을 읽고 병합해서 size 건 (OrderService.findOrders 키셋 페이징)
+        int size = 3;
+        List<Long> pages = new ArrayList<>();
+        Long cursor = null;
+        while (true) {
+            List<List<Long>> shardPages = new ArrayList<>();
+            for (List<Long> shard : shards) {
+                final Long after = cursor;
+                shardPages.add(shard.stream()
+                    .filter(id -> after == null || id < after)
+                    .limit(size)
+                    .collect(Collectors.toList()));
+            }
+            List<Long> page = OrderShards.merge(shardPages, NEWEST_FIRST, size);
+            if (page.isEmpty()) {
+                break;
+            }
+            pages.addAll(page);
+            cursor = page.get(page.size() - 1);
+        }
+
+        assertEquals(expected, pages);
+    }
+
+    private OrderShards shards(int shardCount) {
+
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            dataSources.add(new DriverManagerDataSource("jdbc:h2:mem:shard" + i));
+        }
+        OrderShards orderShards = new OrderShards();
+        orderShards.shardRoutingDataSource = new ShardRoutingDataSource(dataSources);
+        return orderShards;
+    }
+}
@@ -0,0 +1,55 @@
+package jpabook.jpashop.repository.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.persistence.EntityManager;
+import jpabook.jpashop.domain.StockDelta;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.NestedTestConfiguration;
+import org.springframework.test.context.NestedTestConfiguration.EnclosingConfiguration;
+
+/**
+ * 최적화기 설정(hibernate.id.optimizer.pooled.preferred)에 따라 ID 를 할당하는지 (STOCK_DELTA_SEQ, increment_size 100)
+ */
+@DataJpaTest
+class ShardSequenceGeneratorTest {
+
+    @Autowired EntityManager em;
+
+    @Test
+    void pooled_lo_는_구간_안에서_연속으로_할당() {
+
+        long first = persist(em);
+        long second = persist(em);
+
+        assertEquals(first + 1, second);
+    }
+
+    @Nested
+    @NestedTestConfiguration(EnclosingConfiguration.OVERRIDE)
+    @DataJpaTest(properties = "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=none")
+    class None {
+
+        @Autowired EntityManager em;
+
+        @Test
+        void none_은_저장할_때마다_시퀀스_조회() {
+
+            long first = persist(em);
+            long second = persist(em);
+
+            //시퀀스는 increment_size 씩 증가한다
+            assertEquals(first + 100, second);
+        }
+    }
+
+    private static long persist(EntityManager em) {
+
+        StockDelta delta = new StockDelta(1L, 1);
+        em.persist(delta);
+        return delta.getId();
+    }
+}
@@ -0,0 +1,148 @@
+package jpabook.jpashop.retry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @RetryOnConflict - 트랜잭션 바깥에서 감싸 충돌마다 새 트랜잭션으로 다시 실행, 바깥 트랜잭션 안에서는 다시 실행하지 않음
+ */
+@SpringBootTest(properties = {
+    "jpashop.search.index-dir=",
+    "jpashop.retry.max-attempts=3",
+    "jpashop.retry.initial-backoff-millis=1",
+    "jpashop.retry.max-backoff-millis=1"})
+@AutoConfigureTestDatabase
+class ConflictRetryAspectTest {
+
+    @Autowired ConflictingService conflictingService;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        conflictingService.reset();
+    }
+
+    @Test
+    void 충돌하면_새_트랜잭션으로_다시_실행() {
+
+        assertEquals("ok", conflictingService.conflict(2));
+
+        assertEquals(3, conflictingService.attempts());
+        assertEquals(3, conflictingService.transactions());    //시도마다 새 트랜잭션
+    }
+
+    @Test
+    void 충돌이_아닌_예외는_다시_실행하지_않는다() {
+
+        double conflicts = count("jpashop.retry.conflicts");
+
+        assertThrows(IllegalStateException.class, conflictingService::fail);
+
+        assertEquals(1, conflictingService.attempts());
+        assertEquals(conflicts, count("jpashop.retry.conflicts"));
+    }
+
+    @Test
+    void 바깥_트랜잭션_안에서는_다시_실행하지_않는다() {
+
+        double conflicts = count("jpashop.retry.conflicts");
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () ->
+            new TransactionTemplate(transactionManager).execute(status -> conflictingService.conflict(1)));
+
+        assertEquals(1, conflictingService.attempts());
+        assertEquals(conflicts, count("jpashop.retry.conflicts"));
+    }
+
+    @Test
+    void 계속_충돌하면_포기하고_exhausted_를_센다() {
+
+        double exhausted = count("jpashop.retry.exhausted");
+        double retries = count("jpashop.retry.retries");
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> conflictingService.conflict(Integer.MAX_VALUE));
+
+        assertEquals(3, conflictingService.attempts());
+        assertEquals(exhausted + 1, count("jpashop.retry.exhausted"));
+        assertEquals(retries + 2, count("jpashop.retry.retries"));
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    @TestConfiguration
+    static class ConflictingServiceConfig {
+
+        @Bean
+        ConflictingService conflictingService() {
+            return new ConflictingService();
+        }
+    }
+
+    /**
+     * 정해진 횟수만큼 충돌하는 서비스 (시도 횟수와 시도마다의 트랜잭션을 기록)
+     */
+    static class ConflictingService {
+
+        @Autowired EntityManagerFactory entityManagerFactory;
+
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final Set<EntityManager> transactions = new HashSet<>();
+
+        @RetryOnConflict
+        @Transactional
+        public String conflict(int conflicts) {
+
+            assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+            transactions.add(EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory));
+            if (attempts.incrementAndGet() <= conflicts) {
+                throw new ObjectOptimisticLockingFailureException("Order", 1L);
+            }
+            return "ok";
+        }
+
+        @RetryOnConflict
+        @Transactional
+        public void fail() {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("이미 취소된 주문입니다.");
+        }
+
+        public void reset() {
+            attempts.set(0);
+            transactions.clear();
+        }
+
+        public int attempts() {
+            return attempts.get();
+        }
+
+        public int transactions() {
+            return transactions.size();
+        }
+    }
+}
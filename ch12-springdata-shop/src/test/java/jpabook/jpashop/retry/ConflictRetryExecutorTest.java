@@ -0,0 +1,117 @@
+package jpabook.jpashop.retry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.persistence.OptimisticLockException;
+import org.hibernate.StaleObjectStateException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+/**
+ * 충돌 재시도 - 낙관적 락 충돌만 다시 실행, maxAttempts 번 충돌하면 포기, 메트릭
+ */
+class ConflictRetryExecutorTest {
+
+    static final String NAME = "OrderService.cancelOrder(..)";
+
+    ConflictRetryExecutor executor;
+    AtomicInteger attempts;
+
+    @BeforeEach
+    void setUp() {
+
+        executor = new ConflictRetryExecutor();
+        executor.maxAttempts = 3;
+        executor.initialBackoffMillis = 1;
+        executor.maxBackoffMillis = 1;
+        executor.meterRegistry = new SimpleMeterRegistry();
+        attempts = new AtomicInteger();
+    }
+
+    @Test
+    void 충돌하면_다시_실행() {
+
+        Long result = executor.execute(NAME, (Supplier<Long>) () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Order", 1L);
+            }
+            return 1L;
+        });
+
+        assertEquals(1L, result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, count("jpashop.retry.conflicts"));
+        assertEquals(2, count("jpashop.retry.retries"));
+        assertEquals(0, count("jpashop.retry.exhausted"));
+    }
+
+    @Test
+    void 감싼_낙관적_락_예외도_충돌() {
+
+        assertEquals(true, ConflictRetryExecutor.isConflict(new OptimisticLockException()));
+        assertEquals(true, ConflictRetryExecutor.isConflict(
+            new IllegalStateException(new StaleObjectStateException("Order", 1L))));
+        assertEquals(true, ConflictRetryExecutor.isConflict(
+            new RuntimeException(new RuntimeException(new OptimisticLockException()))));
+        assertEquals(false, ConflictRetryExecutor.isConflict(new DataIntegrityViolationException("UK_MEMBER_NAME")));
+        assertEquals(false, ConflictRetryExecutor.isConflict(new IllegalStateException("이미 취소된 주문입니다.")));
+    }
+
+    @Test
+    void 충돌이_아니면_다시_실행하지_않는다() {
+
+        IllegalStateException canceled = new IllegalStateException("이미 취소된 주문입니다.");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> executor.execute(NAME, (Supplier<Long>) () -> {
+            attempts.incrementAndGet();
+            throw canceled;
+        }));
+
+        assertSame(canceled, e);
+        assertEquals(1, attempts.get());
+        assertEquals(0, count("jpashop.retry.conflicts"));
+        assertEquals(0, count("jpashop.retry.retries"));
+    }
+
+    @Test
+    void 검사_예외도_그대로_던진다() {
+
+        assertThrows(IOException.class, () -> executor.execute(NAME, (ConflictRetryExecutor.Attempt<Long>) () -> {
+            attempts.incrementAndGet();
+            throw new IOException();
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void maxAttempts_번_모두_충돌하면_마지막_예외를_던진다() {
+
+        ObjectOptimisticLockingFailureException last = new ObjectOptimisticLockingFailureException("Order", 3L);
+
+        ObjectOptimisticLockingFailureException e = assertThrows(ObjectOptimisticLockingFailureException.class,
+            () -> executor.execute(NAME, (Supplier<Long>) () -> {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new ObjectOptimisticLockingFailureException("Order", (long) attempts.get());
+                }
+                throw last;
+            }));
+
+        assertSame(last, e);
+        assertEquals(3, attempts.get());
+        assertEquals(3, count("jpashop.retry.conflicts"));
+        assertEquals(2, count("jpashop.retry.retries"));
+        assertEquals(1, count("jpashop.retry.exhausted"));
+    }
+
+    private double count(String name) {
+        return executor.meterRegistry.counter(name, "method", NAME).count();
+    }
+}
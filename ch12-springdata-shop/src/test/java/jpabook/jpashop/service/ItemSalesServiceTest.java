@@ -0,0 +1,223 @@
+package jpabook.jpashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.ItemSalesDaily;
+import jpabook.jpashop.domain.ItemSalesDelta;
+import jpabook.jpashop.domain.ItemSalesDto;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderEvent;
+import jpabook.jpashop.domain.OutboxEventType;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.ItemSalesDailyRepository;
+import jpabook.jpashop.repository.ItemSalesDeltaRepository;
+import jpabook.jpashop.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 상품별 일 판매 집계 - 압축 전후 합계, 구독자 실패로 다시 전달한 이벤트를 두 번 세지 않는지
+ */
+@SpringBootTest(properties = {
+    "jpashop.search.index-dir=",
+    //전달과 압축은 테스트에서 직접 부른다 (시작할 때 한 번만 돈다)
+    "jpashop.outbox.poll-interval-millis=3600000",
+    "jpashop.sales.compaction-interval-millis=3600000"})
+@AutoConfigureTestDatabase
+class ItemSalesServiceTest {
+
+    static final int PRICE = 10000;
+
+    static final AtomicLong memberSeq = new AtomicLong();
+
+    @Autowired ItemSalesService itemSalesService;
+    @Autowired OutboxRelay outboxRelay;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired ItemSalesDeltaRepository itemSalesDeltaRepository;
+    @Autowired ItemSalesDailyRepository itemSalesDailyRepository;
+    @Autowired OutboxEventRepository outboxEventRepository;
+    @Autowired FailingSubscriber failingSubscriber;
+    @Autowired MeterRegistry meterRegistry;
+
+    Long memberId;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+
+        //시작할 때 돈 전달(MockCreateService 의 주문)이 끝나기를 기다린 뒤 남은 변화량을 합쳐 둔다
+        for (int i = 0; i < 100 && outboxEventRepository.count() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, outboxEventRepository.count());
+        itemSalesService.compact();
+
+        Member member = new Member();
+        member.setName("판매회원" + memberSeq.incrementAndGet());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberId = memberService.join(member);
+    }
+
+    @Test
+    void 압축해도_판매_합계는_그대로() {
+
+        Long itemId = createBook();
+        Long canceledOrderId = orderService.order(memberId, itemId, 2);
+        orderService.order(memberId, itemId, 3);
+        orderService.cancelOrder(canceledOrderId);
+        outboxRelay.relay();
+
+        List<ItemSalesDelta> deltas = deltasOf(itemId);
+        assertEquals(3, deltas.size());
+        assertSales(itemId, 5, 2);
+
+        itemSalesService.compact();
+
+        assertEquals(0, deltasOf(itemId).size());
+        ItemSalesDaily daily = itemSalesDailyRepository.findById(deltas.get(0).getSalesId()).get();
+        assertEquals(5, daily.getQuantity());
+        assertEquals(5L * PRICE, daily.getRevenue());
+        assertEquals(2, daily.getCanceledQuantity());
+        assertEquals(2L * PRICE, daily.getCanceledRevenue());
+        assertSales(itemId, 5, 2);
+
+        //이미 있는 일 집계에 더한다 (합치기 전에는 일 집계 + 변화량)
+        orderService.order(memberId, itemId, 1);
+        outboxRelay.relay();
+        assertSales(itemId, 6, 2);
+
+        itemSalesService.compact();
+
+        assertEquals(0, deltasOf(itemId).size());
+        assertEquals(6, itemSalesDailyRepository.findById(daily.getId()).get().getQuantity());
+        assertSales(itemId, 6, 2);
+    }
+
+    @Test
+    void 구독자가_실패해서_다시_전달해도_두_번_세지_않는다() {
+
+        Long itemId = createBook();
+        orderService.order(memberId, itemId, 2);
+        Long failingOrderId = orderService.order(memberId, itemId, 3);
+        failingSubscriber.failOnce(failingOrderId);
+        double failures = meterRegistry.counter("jpashop.outbox.failures").count();
+
+        outboxRelay.relay();
+
+        //앞 주문의 변화량을 넣은 뒤 뒤 주문에서 실패 - 함께 롤백되고 두 이벤트 모두 남는다
+        assertTrue(failingSubscriber.getDeltasBeforeFailure() > 0);
+        assertEquals(failures + 1, meterRegistry.counter("jpashop.outbox.failures").count());
+        assertEquals(2, outboxEventRepository.count());
+        assertEquals(0, deltasOf(itemId).size());
+        assertNull(salesOf(itemId));
+
+        //다시 전달 - 한 번씩만 센다
+        outboxRelay.relay();
+        outboxRelay.relay();
+
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(2, deltasOf(itemId).size());
+        assertSales(itemId, 5, 0);
+
+        itemSalesService.compact();
+
+        assertSales(itemId, 5, 0);
+    }
+
+    private Long createBook() {
+
+        Book book = new Book();
+        book.setName("판매 집계 테스트 책");
+        book.setPrice(PRICE);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private List<ItemSalesDelta> deltasOf(Long itemId) {
+        return itemSalesDeltaRepository.findAll().stream()
+            .filter(delta -> delta.getItemId().equals(itemId))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 오늘 앞뒤 하루를 넉넉히 잡은 기간의 상품 판매 합계 (없으면 null)
+     */
+    private ItemSalesDto salesOf(Long itemId) {
+
+        ZonedDateTime today = ItemSalesDelta.dayOf(new Date()).toInstant().atZone(ZoneId.systemDefault());
+        Date from = Date.from(today.minusDays(1).toInstant());
+        Date to = Date.from(today.plusDays(2).toInstant());
+        return itemSalesService.findSalesByItem(from, to).stream()
+            .filter(dto -> dto.getItemId().equals(itemId))
+            .findFirst()
+            .orElse(null);
+    }
+
+    private void assertSales(Long itemId, long quantity, long canceledQuantity) {
+
+        ItemSalesDto sales = salesOf(itemId);
+        assertEquals(quantity, sales.getQuantity());
+        assertEquals(quantity * PRICE, sales.getRevenue());
+        assertEquals(canceledQuantity, sales.getCanceledQuantity());
+        assertEquals(canceledQuantity * PRICE, sales.getCanceledRevenue());
+    }
+
+    @TestConfiguration
+    static class FailingSubscriberConfig {
+
+        @Bean
+        FailingSubscriber failingSubscriber() {
+            return new FailingSubscriber();
+        }
+    }
+
+    /**
+     * 지정한 주문의 주문 이벤트를 한 번 실패시키는 구독자 (전달 트랜잭션에 참여해서 롤백 전용으로 만든다)
+     */
+    static class FailingSubscriber {
+
+        @Autowired ItemSalesDeltaRepository itemSalesDeltaRepository;
+
+        private final AtomicLong failOrderId = new AtomicLong();
+        private volatile long deltasBeforeFailure = -1;
+
+        //트랜잭션 프록시를 거치므로 필드 대신 메서드로 읽고 쓴다
+        public void failOnce(Long orderId) {
+            failOrderId.set(orderId);
+        }
+
+        public long getDeltasBeforeFailure() {
+            return deltasBeforeFailure;
+        }
+
+        @EventListener
+        @Transactional
+        public void onOrderEvent(OrderEvent event) {
+
+            if (event.getEventType() == OutboxEventType.ORDER_PLACED
+                && failOrderId.compareAndSet(event.getOrderId(), 0)) {
+                deltasBeforeFailure = itemSalesDeltaRepository.count();
+                throw new IllegalStateException("구독자 실패 orderId=" + event.getOrderId());
+            }
+        }
+    }
+}
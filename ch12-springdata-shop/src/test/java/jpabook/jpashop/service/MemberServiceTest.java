@@ -0,0 +1,152 @@
+package jpabook.jpashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 회원 가입 중복 검증 - 블룸 필터로 DB 조회 생략, 동시 가입은 UK_MEMBER_NAME 으로 한 명만, 다른 무결성 위반은 그대로
+ */
+@SpringBootTest(properties = "jpashop.search.index-dir=")
+@AutoConfigureTestDatabase
+class MemberServiceTest {
+
+    static final String DUPLICATE = "이미 존재하는 회원입니다.";
+
+    static final AtomicLong memberSeq = new AtomicLong();
+
+    @Autowired MemberService memberService;
+    @Autowired MemberNameFilter memberNameFilter;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @SpyBean MemberRepository memberRepository;
+
+    @Test
+    void 블룸_필터에_없는_이름은_DB_조회_없이_가입() {
+
+        String name = newName();
+        assertFalse(memberNameFilter.mightContain(name));
+
+        memberService.join(member(name));
+
+        verify(memberRepository, never()).existsByName(name);
+        assertTrue(memberNameFilter.mightContain(name));
+
+        //가입한 이름은 DB 로 확인하고 거절
+        clearInvocations(memberRepository);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> memberService.join(member(name)));
+        assertEquals(DUPLICATE, e.getMessage());
+        verify(memberRepository, times(1)).existsByName(name);
+    }
+
+    @Test
+    void 블룸_필터가_모르는_중복도_UK_MEMBER_NAME_으로_거절() {
+
+        //MemberService 를 거치지 않고 저장 - 블룸 필터에 없다
+        String name = newName();
+        memberRepository.saveAndFlush(member(name));
+        assertFalse(memberNameFilter.mightContain(name));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> memberService.join(member(name)));
+
+        assertEquals(DUPLICATE, e.getMessage());
+        assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+        verify(memberRepository, never()).existsByName(name);
+        assertEquals(1, memberRepository.findByName(name).size());
+    }
+
+    @Test
+    void 같은_이름으로_동시에_가입하면_하나만_성공() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 20; round++) {
+                String name = newName();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> joins = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    joins.add(executor.submit(() -> {
+                        start.await();
+                        return memberService.join(member(name));
+                    }));
+                }
+                start.countDown();
+
+                int joined = 0;
+                List<Throwable> failures = new ArrayList<>();
+                for (Future<Long> join : joins) {
+                    try {
+                        join.get(30, TimeUnit.SECONDS);
+                        joined++;
+                    } catch (ExecutionException e) {
+                        failures.add(e.getCause());
+                    }
+                }
+
+                assertEquals(1, joined);
+                assertEquals(1, failures.size());
+                assertEquals(IllegalStateException.class, failures.get(0).getClass());
+                assertEquals(DUPLICATE, failures.get(0).getMessage());
+                assertEquals(1, memberRepository.findByName(name).size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void 이름_중복이_아닌_무결성_위반은_그대로_던진다() {
+
+        jdbcTemplate.execute("ALTER TABLE MEMBER ALTER COLUMN CITY SET NOT NULL");
+        try {
+            String name = newName();
+            Member member = new Member();
+            member.setName(name);   //주소 없음
+
+            DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+                () -> memberService.join(member));
+
+            assertFalse(e.getMessage().toUpperCase().contains("UK_MEMBER_NAME"));
+            assertFalse(memberNameFilter.mightContain(name));
+            assertTrue(memberRepository.findByName(name).isEmpty());
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE MEMBER ALTER COLUMN CITY SET NULL");
+        }
+    }
+
+    private String newName() {
+        return "가입회원" + memberSeq.incrementAndGet();
+    }
+
+    private Member member(String name) {
+
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return member;
+    }
+}
@@ -0,0 +1,183 @@
+package jpabook.jpashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.ItemSalesDelta;
+import jpabook.jpashop.domain.ItemSalesDto;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OutboxEvent;
+import jpabook.jpashop.domain.OutboxEventType;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 주문 취소 - 동시에 두 번 취소하면 충돌 재시도가 다시 읽은 CANCEL 상태에서 멈추고 재고와 판매 집계는 한 번만 바뀌는지
+ */
+@SpringBootTest(properties = {
+    "jpashop.search.index-dir=",
+    //전달은 테스트에서 직접 부른다
+    "jpashop.outbox.poll-interval-millis=3600000"})
+@AutoConfigureTestDatabase
+class OrderServiceTest {
+
+    static final AtomicLong memberSeq = new AtomicLong();
+
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired ItemSalesService itemSalesService;
+    @Autowired OutboxRelay outboxRelay;
+    @Autowired ItemRepository itemRepository;
+    @Autowired OrderRepository orderRepository;
+    @Autowired StockReservationEngine stockReservationEngine;
+    @Autowired MeterRegistry meterRegistry;
+    @Autowired CancelBarrier cancelBarrier;
+
+    @Test
+    void 동시에_두_번_취소해도_한_번만_취소() throws Exception {
+
+        Long memberId = createMember();
+        Long itemId = createBook(10);
+        Long orderId = orderService.order(memberId, itemId, 4);
+        double conflicts = count("jpashop.retry.conflicts");
+
+        //먼저 온 취소가 커밋 전에 기다리는 동안 다른 취소도 ORDER 상태로 읽게 한다
+        cancelBarrier.hold(orderId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        int canceled = 0;
+        List<Throwable> failures = new ArrayList<>();
+        try {
+            List<Future<?>> cancels = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                cancels.add(executor.submit(() -> orderService.cancelOrder(orderId)));
+            }
+            for (Future<?> cancel : cancels) {
+                try {
+                    cancel.get(30, TimeUnit.SECONDS);
+                    canceled++;
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //둘 다 취소 직전까지 갔고, 진 쪽은 충돌로 다시 실행해서 이미 취소된 주문으로 실패
+        assertEquals(2, cancelBarrier.cancelEvents());
+        assertEquals(conflicts + 1, count("jpashop.retry.conflicts"));
+        assertEquals(1, canceled);
+        assertEquals(1, failures.size());
+        assertEquals(IllegalStateException.class, failures.get(0).getClass());
+        assertEquals("이미 취소된 주문입니다.", failures.get(0).getMessage());
+
+        //재고는 한 번만 돌려받는다
+        assertEquals(OrderStatus.CANCEL, orderRepository.findById(orderId).get().getStatus());
+        stockReservationEngine.flush();
+        assertEquals(10, itemRepository.findStockQuantityById(itemId));
+
+        //취소 이벤트도 하나 - 판매 집계에 한 번만 들어간다
+        outboxRelay.relay();
+        ItemSalesDto sales = salesOf(itemId);
+        assertEquals(4L, sales.getQuantity());
+        assertEquals(4L, sales.getCanceledQuantity());
+    }
+
+    private ItemSalesDto salesOf(Long itemId) {
+
+        ZonedDateTime today = ItemSalesDelta.dayOf(new Date()).toInstant().atZone(ZoneId.systemDefault());
+        return itemSalesService.findSalesByItem(Date.from(today.minusDays(1).toInstant()),
+                Date.from(today.plusDays(2).toInstant())).stream()
+            .filter(dto -> dto.getItemId().equals(itemId))
+            .findFirst()
+            .get();
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private Long createMember() {
+
+        Member member = new Member();
+        member.setName("취소회원" + memberSeq.incrementAndGet());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return memberService.join(member);
+    }
+
+    private Long createBook(int stockQuantity) {
+
+        Book book = new Book();
+        book.setName("취소 테스트 책");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    @TestConfiguration
+    static class CancelBarrierConfig {
+
+        @Bean
+        CancelBarrier cancelBarrier() {
+            return new CancelBarrier();
+        }
+    }
+
+    /**
+     * 지정한 주문의 취소 이벤트를 저장하기 직전에 두 취소가 모두 올 때까지 기다리게 한다 (둘 다 ORDER 상태로 읽은 뒤)
+     */
+    @Aspect
+    static class CancelBarrier {
+
+        private volatile Long orderId;
+        private volatile CountDownLatch bothCanceling;
+        private final AtomicInteger cancelEvents = new AtomicInteger();
+
+        void hold(Long orderId) {
+            this.bothCanceling = new CountDownLatch(2);
+            this.orderId = orderId;
+        }
+
+        int cancelEvents() {
+            return cancelEvents.get();
+        }
+
+        @Before("bean(outboxEventRepository) && execution(* save(..)) && args(event)")
+        public void beforeSave(OutboxEvent event) throws InterruptedException {
+
+            if (event.getEventType() == OutboxEventType.ORDER_CANCELED && event.getOrderId().equals(orderId)) {
+                cancelEvents.incrementAndGet();
+                bothCanceling.countDown();
+                bothCanceling.await(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
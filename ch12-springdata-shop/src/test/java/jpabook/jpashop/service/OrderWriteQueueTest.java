@@ -0,0 +1,229 @@
+package jpabook.jpashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.shard.OrderShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * 주문 묶음 커밋 - 주문별 실패 격리, 묶음 롤백 후 한 건씩 다시 저장, 종료 시 남은 주문 저장, 대기열 초과
+ */
+@SpringBootTest(properties = {
+    "jpashop.search.index-dir=",
+    "jpashop.order.group-commit.enabled=true",
+    //한 번에 넣은 주문이 한 묶음이 되도록 넉넉히 기다린다
+    "jpashop.order.group-commit.max-wait-millis=200"})
+@AutoConfigureTestDatabase
+class OrderWriteQueueTest {
+
+    static final long MISSING_ID = -1L;
+
+    static final AtomicLong memberSeq = new AtomicLong();
+
+    @Autowired OrderWriteQueue orderWriteQueue;
+    @Autowired OrderService orderService;
+    @Autowired OrderShards orderShards;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired ItemRepository itemRepository;
+    @Autowired OrderRepository orderRepository;
+    @Autowired StockReservationEngine stockReservationEngine;
+    @Autowired MeterRegistry meterRegistry;
+
+    Long memberId;
+    Long itemId;
+
+    @BeforeEach
+    void setUp() {
+
+        Member member = new Member();
+        member.setName("묶음회원" + memberSeq.incrementAndGet());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberId = memberService.join(member);
+
+        Book book = new Book();
+        book.setName("묶음 테스트 책");
+        book.setPrice(10000);
+        book.setStockQuantity(5);
+        itemService.saveItem(book);
+        itemId = book.getId();
+    }
+
+    @Test
+    void 실패한_주문만_빼고_한_묶음으로_커밋() throws Exception {
+
+        double fallbacks = fallbacks();
+        long groups = groups();
+
+        CompletableFuture<Long> first = orderWriteQueue.submit(memberId, itemId, 1);
+        CompletableFuture<Long> missingMember = orderWriteQueue.submit(MISSING_ID, itemId, 1);
+        CompletableFuture<Long> second = orderWriteQueue.submit(memberId, itemId, 1);
+        CompletableFuture<Long> notEnoughStock = orderWriteQueue.submit(memberId, itemId, 100);
+        CompletableFuture<Long> third = orderWriteQueue.submit(memberId, itemId, 1);
+
+        List<Long> orderIds = placed(first, second, third);
+        assertFailed(missingMember, IllegalArgumentException.class);
+        assertFailed(notEnoughStock, NotEnoughStockException.class);
+
+        assertEquals(groups + 1, groups());
+        assertEquals(fallbacks, fallbacks());
+        assertCommitted(orderIds, 2);
+    }
+
+    @Test
+    void 묶음이_롤백되면_한_건씩_다시_저장() throws Exception {
+
+        double fallbacks = fallbacks();
+
+        //없는 상품 - ItemService.findById 의 예외가 묶음 트랜잭션을 롤백 전용으로 만든다
+        CompletableFuture<Long> first = orderWriteQueue.submit(memberId, itemId, 1);
+        CompletableFuture<Long> missingItem = orderWriteQueue.submit(memberId, MISSING_ID, 1);
+        CompletableFuture<Long> second = orderWriteQueue.submit(memberId, itemId, 1);
+        CompletableFuture<Long> third = orderWriteQueue.submit(memberId, itemId, 1);
+
+        List<Long> orderIds = placed(first, second, third);
+        assertFailed(missingItem, IllegalArgumentException.class);
+
+        assertEquals(fallbacks + 1, fallbacks());
+        //롤백된 묶음의 선점은 돌려받고 다시 저장한 주문만 차감한다
+        assertCommitted(orderIds, 2);
+    }
+
+    @Test
+    void 종료하면_대기열에_남은_주문을_저장하고_멈춘다() throws Exception {
+
+        OrderWriteQueue queue = newQueue(orderService, 10, 1000);
+
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(queue.submit(memberId, itemId, 1));
+        }
+        queue.stop();
+
+        for (CompletableFuture<Long> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertCommitted(placed(futures.toArray(new CompletableFuture[0])), 2);
+        assertFailed(queue.submit(memberId, itemId, 1), RejectedExecutionException.class);
+    }
+
+    @Test
+    void 대기열이_가득_차면_바로_거절() throws Exception {
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OrderService blocking = new OrderService() {
+            @Override
+            public void orderGroup(List<PendingOrder> pendingOrders) {
+                writing.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pendingOrders.forEach(pendingOrder -> pendingOrder.placed(0L));
+            }
+        };
+        OrderWriteQueue queue = newQueue(blocking, 1, 0);
+
+        //쓰기 스레드가 첫 주문을 잡고 있는 동안 대기열(1 건)을 채운다
+        CompletableFuture<Long> writingOrder = queue.submit(memberId, itemId, 1);
+        assertTrue(writing.await(30, TimeUnit.SECONDS));
+        CompletableFuture<Long> queued = queue.submit(memberId, itemId, 1);
+        CompletableFuture<Long> rejected = queue.submit(memberId, itemId, 1);
+
+        assertFailed(rejected, RejectedExecutionException.class);
+        assertEquals(1, queue.meterRegistry.counter("jpashop.order.group.rejected").count());
+        assertFalse(queued.isDone());
+
+        release.countDown();
+        assertEquals(0L, writingOrder.get(30, TimeUnit.SECONDS));
+        assertEquals(0L, queued.get(30, TimeUnit.SECONDS));
+        queue.stop();
+    }
+
+    /**
+     * 컨텍스트의 대기열과 따로 도는 대기열 (종료, 대기열 초과용)
+     */
+    private OrderWriteQueue newQueue(OrderService orderService, int queueCapacity, long maxWaitMillis) {
+
+        OrderWriteQueue queue = new OrderWriteQueue();
+        queue.queueCapacity = queueCapacity;
+        queue.maxBatch = 50;
+        queue.maxWaitMillis = maxWaitMillis;
+        queue.orderService = orderService;
+        queue.orderShards = orderShards;
+        queue.meterRegistry = new SimpleMeterRegistry();
+        queue.start();
+        return queue;
+    }
+
+    @SafeVarargs
+    private final List<Long> placed(CompletableFuture<Long>... futures) throws Exception {
+
+        List<Long> orderIds = new ArrayList<>();
+        for (CompletableFuture<Long> future : futures) {
+            orderIds.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return orderIds;
+    }
+
+    private void assertFailed(CompletableFuture<Long> future, Class<? extends Throwable> failure) {
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+        assertEquals(failure, e.getCause().getClass());
+    }
+
+    /**
+     * 완료한 주문만 커밋됐고 그만큼만 재고가 줄었는지
+     */
+    private void assertCommitted(List<Long> orderIds, int stockQuantity) {
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberId(memberId);
+        List<Long> committed = new ArrayList<>();
+        for (Order order : orderRepository.search(orderSearch)) {
+            committed.add(order.getId());
+        }
+        committed.sort(null);
+        List<Long> expected = new ArrayList<>(orderIds);
+        expected.sort(null);
+        assertEquals(expected, committed);
+
+        stockReservationEngine.flush();
+        assertEquals(stockQuantity, itemRepository.findStockQuantityById(itemId));
+    }
+
+    private long groups() {
+        return meterRegistry.get("jpashop.order.group.size").summary().count();
+    }
+
+    private double fallbacks() {
+        return meterRegistry.counter("jpashop.order.group.fallbacks").count();
+    }
+}
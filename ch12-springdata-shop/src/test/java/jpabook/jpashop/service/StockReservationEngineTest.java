@@ -0,0 +1,211 @@
+package jpabook.jpashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 마지막 재고를 두고 동시에 주문해도 재고보다 많이 팔지 않는지 (커밋 전이거나 롤백된 취소 포함)
+ */
+@SpringBootTest(properties = "jpashop.search.index-dir=")
+@AutoConfigureTestDatabase
+class StockReservationEngineTest {
+
+    static final int RACERS = 16;
+
+    static final AtomicLong memberSeq = new AtomicLong();
+
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired OrderService orderService;
+    @Autowired ItemRepository itemRepository;
+    @Autowired OrderRepository orderRepository;
+    @Autowired StockReservationEngine stockReservationEngine;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MeterRegistry meterRegistry;
+
+    Long memberId;
+
+    @BeforeEach
+    void setUp() {
+
+        Member member = new Member();
+        member.setName("재고회원" + memberSeq.incrementAndGet());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberId = memberService.join(member);
+    }
+
+    @Test
+    void 마지막_재고를_동시에_주문하면_재고만큼만_성공() throws Exception {
+
+        Long itemId = createBook(3);
+        double oversold = oversold();
+
+        Race race = race(itemId);
+
+        assertEquals(3, race.placed);
+        assertEquals(RACERS - 3, race.notEnoughStock);
+        assertStock(itemId, 0, oversold);
+    }
+
+    @Test
+    void 롤백된_취소는_재고를_돌려주지_않는다() throws Exception {
+
+        Long itemId = createBook(2);
+        Long orderId = orderService.order(memberId, itemId, 2);
+        double oversold = oversold();
+
+        //취소가 끝나지 않은 동안 - 돌려받은 재고가 아직 없다
+        Race during = cancelWhile(orderId, false, () -> race(itemId));
+        assertEquals(0, during.placed);
+        assertEquals(RACERS, during.notEnoughStock);
+
+        //롤백 - 재고는 그대로
+        Race after = race(itemId);
+        assertEquals(0, after.placed);
+        assertEquals(RACERS, after.notEnoughStock);
+        assertEquals(OrderStatus.ORDER, orderRepository.findById(orderId).get().getStatus());
+        assertStock(itemId, 0, oversold);
+    }
+
+    @Test
+    void 커밋된_취소는_커밋된_뒤에_재고를_돌려준다() throws Exception {
+
+        Long itemId = createBook(2);
+        Long orderId = orderService.order(memberId, itemId, 2);
+        double oversold = oversold();
+
+        Race during = cancelWhile(orderId, true, () -> race(itemId));
+        assertEquals(0, during.placed);
+        assertEquals(RACERS, during.notEnoughStock);
+
+        Race after = race(itemId);
+        assertEquals(2, after.placed);
+        assertEquals(RACERS - 2, after.notEnoughStock);
+        assertEquals(OrderStatus.CANCEL, orderRepository.findById(orderId).get().getStatus());
+        assertStock(itemId, 0, oversold);
+    }
+
+    /**
+     * RACERS 개 스레드가 동시에 한 개씩 주문
+     */
+    private Race race(Long itemId) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(RACERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < RACERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        orderService.order(memberId, itemId, 1);
+                        return true;
+                    } catch (NotEnoughStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            Race race = new Race();
+            for (Future<Boolean> future : futures) {
+                if (future.get(30, TimeUnit.SECONDS)) {
+                    race.placed++;
+                } else {
+                    race.notEnoughStock++;
+                }
+            }
+            return race;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 다른 스레드의 트랜잭션에서 주문을 취소해 두고 work 를 실행한 뒤 그 트랜잭션을 커밋하거나 롤백한다
+     */
+    private Race cancelWhile(Long orderId, boolean commit, RaceWork work) throws Exception {
+
+        CountDownLatch canceled = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> cancel = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                orderService.cancelOrder(orderId);
+                canceled.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (!commit) {
+                    status.setRollbackOnly();
+                }
+                return null;
+            }));
+
+            canceled.await(30, TimeUnit.SECONDS);
+            try {
+                return work.run();
+            } finally {
+                finish.countDown();
+                cancel.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertStock(Long itemId, int stockQuantity, double oversold) {
+
+        stockReservationEngine.flush();
+        assertEquals(stockQuantity, itemRepository.findStockQuantityById(itemId));
+        assertEquals(oversold, oversold());
+    }
+
+    private double oversold() {
+        return meterRegistry.counter("jpashop.stock.oversold").count();
+    }
+
+    private Long createBook(int stockQuantity) {
+
+        Book book = new Book();
+        book.setName("재고 테스트 책");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    interface RaceWork {
+        Race run() throws Exception;
+    }
+
+    static class Race {
+        int placed;
+        int notEnoughStock;
+    }
+}